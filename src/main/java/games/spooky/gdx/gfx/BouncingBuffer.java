@@ -23,49 +23,182 @@
  */
 package games.spooky.gdx.gfx;
 
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
 import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.TextureData;
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.GLOnlyTextureData;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
 
 /**
  * A double FrameBuffer thingy. Behaves more or less like a single FrameBuffer
  * but every time a call to end() is issued, buffers swap. This allows to apply
  * effect after effect on a single BouncingBuffer. Bonus point: handles viewport
  * somehow.
+ * <p>
+ * Each FrameBuffer is only allocated on first use. If idle frames are set,
+ * trim() disposes FrameBuffers unused for that many frames, to be allocated
+ * again when needed.
+ * <p>
+ * BouncingBuffer may be resized. FrameBuffers are then allocated with a
+ * capacity rounded up to a bucket size, and only reallocated when the size
+ * crosses a bucket. Rendering happens in the lower-left sub-rectangle of
+ * logical size, textures telling the part to sample through their UV scale.
  */
 public final class BouncingBuffer implements Disposable {
 
-	public final int width;
-	public final int height;
+	/** Bucket size rounding capacity up to the next power of two. */
+	public static final int POWER_OF_TWO = 0;
 
-	private final FrameBuffer buffer1;
-	private final FrameBuffer buffer2;
+	private int width;
+	private int height;
 
-	private Texture texture1;
-	private Texture texture2;
+	private int capacityWidth;
+	private int capacityHeight;
 
-	private FrameBuffer current;
+	private int bucketSize = 1;
+
+	private final Format format;
+	private final boolean hasDepth;
+
+	private final FrameBuffer[] buffers = new FrameBuffer[2];
+	private final long[] lastUse = new long[2];
+
+	private int current = 0;
 
 	private TextureWrap uWrap;
 	private TextureWrap vWrap;
 
 	private Rectangle viewport = null;
 
-	public BouncingBuffer(Format format, int width, int height, boolean hasDepth) {
-		buffer1 = new BouncyBuffer(format, width, height, hasDepth);
-		buffer2 = new BouncyBuffer(format, width, height, hasDepth);
-		current = buffer1;
+	private int idleFrames = 0;
+
+	// Context generation textures were last set up in
+	private int generation = ContextRecovery.getGeneration();
 
-		this.width = this.buffer1.getWidth();
-		this.height = this.buffer1.getHeight();
+	public BouncingBuffer(Format format, int width, int height, boolean hasDepth) {
+		this.format = format;
+		this.width = this.capacityWidth = width;
+		this.height = this.capacityHeight = height;
+		this.hasDepth = hasDepth;
 
 		this.uWrap = TextureWrap.ClampToEdge;
 		this.vWrap = TextureWrap.ClampToEdge;
+	}
 
-		rebind();
+	public Format getFormat() {
+		return format;
+	}
+
+	public boolean hasDepth() {
+		return hasDepth;
+	}
+
+	/**
+	 * Gets the logical width, that is the width rendered to.
+	 *
+	 * @return the logical width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the logical height, that is the height rendered to.
+	 *
+	 * @return the logical height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the width FrameBuffers are allocated with.
+	 *
+	 * @return the capacity width
+	 */
+	public int getCapacityWidth() {
+		return capacityWidth;
+	}
+
+	/**
+	 * Gets the height FrameBuffers are allocated with.
+	 *
+	 * @return the capacity height
+	 */
+	public int getCapacityHeight() {
+		return capacityHeight;
+	}
+
+	public int getBucketSize() {
+		return bucketSize;
+	}
+
+	/**
+	 * Sets the bucket size capacity is rounded up to upon resizing. Takes
+	 * effect on next resize.
+	 *
+	 * @param bucketSize
+	 *            the bucket size in pixels, 1 for exact sizes or
+	 *            {@link #POWER_OF_TWO}
+	 */
+	public void setBucketSize(int bucketSize) {
+		this.bucketSize = bucketSize;
+	}
+
+	/**
+	 * Resizes this BouncingBuffer. FrameBuffers are only reallocated if
+	 * capacity has to change, otherwise only the sub-rectangle rendered to
+	 * does. Empty sizes, such as a minimized window's, are ignored.
+	 *
+	 * @param width
+	 *            the new logical width
+	 * @param height
+	 *            the new logical height
+	 */
+	public void resize(int width, int height) {
+		if (width <= 0 || height <= 0)
+			return;
+
+		this.width = width;
+		this.height = height;
+
+		int newCapacityWidth = bucket(width);
+		int newCapacityHeight = bucket(height);
+		if (newCapacityWidth != capacityWidth || newCapacityHeight != capacityHeight) {
+			capacityWidth = newCapacityWidth;
+			capacityHeight = newCapacityHeight;
+			dispose();
+		} else {
+			updateScales();
+		}
+	}
+
+	/**
+	 * Gets the horizontal scale from full texture coordinates to the
+	 * sub-rectangle rendered to.
+	 *
+	 * @return the horizontal UV scale
+	 */
+	public float getUScale() {
+		return (float) width / capacityWidth;
+	}
+
+	/**
+	 * Gets the vertical scale from full texture coordinates to the
+	 * sub-rectangle rendered to.
+	 *
+	 * @return the vertical UV scale
+	 */
+	public float getVScale() {
+		return (float) height / capacityHeight;
 	}
 
 	public Rectangle getViewport() {
@@ -76,78 +209,229 @@ public final class BouncingBuffer implements Disposable {
 		this.viewport = viewport;
 	}
 
-	public void rebind() {
-		texture1 = buffer1.getColorBufferTexture();
-		texture2 = buffer2.getColorBufferTexture();
+	public int getIdleFrames() {
+		return idleFrames;
+	}
 
-		texture1.setWrap(uWrap, vWrap);
-		texture2.setWrap(uWrap, vWrap);
+	/**
+	 * Sets the count of frames after which an unused FrameBuffer gets
+	 * disposed by trim().
+	 *
+	 * @param idleFrames
+	 *            the count of frames, 0 to never dispose FrameBuffers
+	 */
+	public void setIdleFrames(int idleFrames) {
+		this.idleFrames = idleFrames;
+	}
+
+	public void rebind() {
+		FrameBufferStack.invalidate();
+		generation = ContextRecovery.getGeneration();
+		for (FrameBuffer buffer : buffers)
+			if (buffer != null)
+				buffer.getColorBufferTexture().setWrap(uWrap, vWrap);
+		GLState.invalidateTextures();
+		updateScales();
 	}
 
 	public void setTextureWrap(TextureWrap u, TextureWrap v) {
 		this.uWrap = u;
 		this.vWrap = v;
 
-		texture1.setWrap(u, v);
-		texture2.setWrap(u, v);
+		rebind();
 	}
 
 	public void begin() {
-		current.begin();
+		obtain(current).begin();
 	}
 
 	public void end() {
-		current.end();
+		obtain(current).end();
 	}
 
 	public FrameBuffer getCurrentBuffer() {
-		return current;
+		return obtain(current);
 	}
 
 	public Texture getCurrentTexture() {
-		return current == buffer1 ? texture1 : texture2;
+		return obtain(current).getColorBufferTexture();
 	}
 
 	public FrameBuffer getResultBuffer() {
-		return (current == buffer1) ? buffer2 : buffer1;
+		return obtain(1 - current);
 	}
 
 	public Texture getResultTexture() {
-		return current == buffer1 ? texture2 : texture1;
+		return obtain(1 - current).getColorBufferTexture();
 	}
 
 	public FrameBuffer getOtherBuffer() {
-		return (current == buffer1) ? buffer2 : buffer1;
+		return obtain(1 - current);
 	}
 
 	public Texture getOtherTexture() {
-		return current == buffer1 ? texture2 : texture1;
+		return obtain(1 - current).getColorBufferTexture();
+	}
+
+	/**
+	 * Finds the allocated FrameBuffer whose color texture is given one,
+	 * without allocating any.
+	 *
+	 * @param texture
+	 *            the color texture
+	 * @return the FrameBuffer owning given texture, null if none
+	 */
+	FrameBuffer findBuffer(Texture texture) {
+		for (FrameBuffer buffer : buffers)
+			if (buffer != null && buffer.getColorBufferTexture() == texture)
+				return buffer;
+		return null;
+	}
+
+	/**
+	 * Gets the count of FrameBuffers currently allocated.
+	 *
+	 * @return the count of allocated FrameBuffers, from 0 to 2
+	 */
+	public int getAllocatedCount() {
+		int count = 0;
+		for (FrameBuffer buffer : buffers)
+			if (buffer != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Gets the estimated memory used by allocated FrameBuffers.
+	 *
+	 * @return the estimated size in bytes
+	 */
+	public long getEstimatedBytes() {
+		return getAllocatedCount() * TransientBufferPool.estimateBytes(format, capacityWidth, capacityHeight, hasDepth);
+	}
+
+	/**
+	 * Disposes FrameBuffers unused for more than idle frames, if set.
+	 */
+	public void trim() {
+		if (idleFrames <= 0)
+			return;
+		long frame = Gdx.graphics.getFrameId();
+		for (int i = 0; i < buffers.length; i++) {
+			if (buffers[i] != null && frame - lastUse[i] > idleFrames) {
+				buffers[i].dispose();
+				buffers[i] = null;
+			}
+		}
 	}
 
 	@Override
 	public void dispose() {
-		buffer1.dispose();
-		buffer2.dispose();
+		for (int i = 0; i < buffers.length; i++) {
+			if (buffers[i] != null) {
+				buffers[i].dispose();
+				buffers[i] = null;
+			}
+		}
+	}
+
+	private FrameBuffer obtain(int index) {
+		// FrameBuffers recreated after context loss come with new textures
+		if (generation != ContextRecovery.getGeneration()) {
+			long start = TimeUtils.nanoTime();
+			rebind();
+			ContextRecovery.reportRecovery(start);
+		}
+
+		FrameBuffer buffer = buffers[index];
+		if (buffer == null) {
+			buffer = new BouncyBuffer(format, capacityWidth, capacityHeight, hasDepth);
+			buffer.getColorBufferTexture().setWrap(uWrap, vWrap);
+			((SubTexture) buffer.getColorBufferTexture()).setScale(getUScale(), getVScale());
+			buffers[index] = buffer;
+			// Building and wrapping bound its texture and the default FrameBuffer behind our back
+			GLState.invalidateTextures();
+			FrameBufferStack.invalidate();
+		}
+		lastUse[index] = Gdx.graphics.getFrameId();
+		return buffer;
+	}
+
+	private int bucket(int size) {
+		if (bucketSize == POWER_OF_TWO)
+			return MathUtils.nextPowerOfTwo(size);
+		if (bucketSize <= 1)
+			return size;
+		return (size + bucketSize - 1) / bucketSize * bucketSize;
+	}
+
+	private void updateScales() {
+		for (FrameBuffer buffer : buffers)
+			if (buffer != null)
+				((SubTexture) buffer.getColorBufferTexture()).setScale(getUScale(), getVScale());
 	}
 
 	private void bounce() {
-		current = (current == buffer1) ? buffer2 : buffer1;
+		current = 1 - current;
 	}
 
-	private class BouncyBuffer extends FrameBuffer {
+	private class BouncyBuffer extends FrameBuffer implements FrameBufferStack.StackedFrameBuffer {
 
 		public BouncyBuffer(Format format, int width, int height, boolean hasDepth) {
 			super(format, width, height, hasDepth);
 		}
 
+		@Override
+		public void begin() {
+			// Render to logical size only, capacity may be larger
+			FrameBufferStack.push(this, 0, 0, BouncingBuffer.this.width, BouncingBuffer.this.height);
+		}
+
+		@Override
+		protected Texture createColorTexture() {
+			int glFormat = Pixmap.Format.toGlFormat(format);
+			int glType = Pixmap.Format.toGlType(format);
+			SubTexture result = new SubTexture(new GLOnlyTextureData(width, height, 0, glFormat, glFormat, glType));
+			result.setFilter(TextureFilter.Linear, TextureFilter.Linear);
+			result.setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+			return result;
+		}
+
 		@Override
 		public void end() {
 			if (viewport == null)
-				super.end();
+				FrameBufferStack.pop();
 			else {
-				super.end((int) viewport.x, (int) viewport.y, (int) viewport.width, (int) viewport.height);
+				FrameBufferStack.pop((int) viewport.x, (int) viewport.y, (int) viewport.width, (int) viewport.height);
 			}
 			bounce();
 		}
 	}
+
+	/**
+	 * A texture whose meaningful content only covers its lower-left part, as
+	 * told by its UV scale.
+	 */
+	public static class SubTexture extends Texture {
+
+		private float uScale = 1f;
+		private float vScale = 1f;
+
+		SubTexture(TextureData data) {
+			super(data);
+		}
+
+		public float getUScale() {
+			return uScale;
+		}
+
+		public float getVScale() {
+			return vScale;
+		}
+
+		void setScale(float uScale, float vScale) {
+			this.uScale = uScale;
+			this.vScale = vScale;
+		}
+	}
 }
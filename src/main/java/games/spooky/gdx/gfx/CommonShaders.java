@@ -24,32 +24,37 @@
 package games.spooky.gdx.gfx;
 
 public class CommonShaders {
-	
-	/** A simple screenspace vertex shader. */
-	public static final String Screenspace = "#ifdef GL_ES"
+
+	/**
+	 * The usual precision preamble, defining PRECISION. Available as
+	 * <code>#include "precision"</code> through the ShaderPreprocessor.
+	 */
+	public static final String Precision = "#ifdef GL_ES"
 			+ "\n	#define PRECISION mediump"
 			+ "\n	precision PRECISION float;"
 			+ "\n#else"
 			+ "\n	#define PRECISION"
-			+ "\n#endif"
+			+ "\n#endif";
+	
+	/**
+	 * A simple screenspace vertex shader. Texture coordinates are scaled by
+	 * u_uvScale, so that only part of the source may be sampled.
+	 */
+	public static final String Screenspace = Precision
 			+ "\n"
 			+ "\nattribute vec4 a_position;"
 			+ "\nattribute vec2 a_texCoord0;"
+			+ "\nuniform vec2 u_uvScale;"
 			+ "\nvarying vec2 v_texCoords;"
 			+ "\n"
 			+ "\nvoid main()"
 			+ "\n{"
-			+ "\n	v_texCoords = a_texCoord0;"
+			+ "\n	v_texCoords = a_texCoord0 * u_uvScale;"
 			+ "\n	gl_Position = a_position;"
 			+ "\n}";
 
 	/** A simple copy fragment shader. */
-	public static final String Copy = "#ifdef GL_ES"
-			+ "\n	#define PRECISION mediump"
-			+ "\n	precision PRECISION float;"
-			+ "\n#else"
-			+ "\n	#define PRECISION"
-			+ "\n#endif"
+	public static final String Copy = Precision
 			+ "\n"
 			+ "\nuniform sampler2D u_texture0;"
 			+ "\nvarying vec2 v_texCoords;"
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Keeps track of OpenGL context losses, so that gdx-gfx resources recover
+ * lazily, on first use after a loss, instead of all at once through
+ * rebind().
+ * <p>
+ * libGDX restores its managed objects by itself (ShaderPrograms and Meshes
+ * lazily, FrameBuffers and Textures upon resume). What is left to gdx-gfx is
+ * looking up uniform locations again, uploading parameters from their CPU
+ * copies, re-applying texture wrapping to new FrameBuffer textures and
+ * forgetting cached GL state. Each resource does so the first time it is
+ * used in a new context generation.
+ * <p>
+ * Call {@link #contextLost()} from ApplicationListener.resume() on platforms
+ * where the context may be lost (Android).
+ */
+public final class ContextRecovery {
+
+	private ContextRecovery() {
+	}
+
+	private static int generation = 0;
+
+	private static long recoveryNanos = 0L;
+	private static int recoveredCount = 0;
+
+	/**
+	 * Notifies that the OpenGL context has been lost and recreated. Every
+	 * resource will recover on its next use.
+	 */
+	public static void contextLost() {
+		generation++;
+		recoveryNanos = 0L;
+		recoveredCount = 0;
+		GLState.invalidate();
+		FrameBufferStack.invalidate();
+	}
+
+	/**
+	 * Gets current context generation. Resources remember the generation they
+	 * were last valid in, and recover whenever it differs.
+	 *
+	 * @return the count of context losses so far
+	 */
+	public static int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Reports that a resource has recovered from context loss.
+	 *
+	 * @param startNanos
+	 *            the time recovery started, from TimeUtils.nanoTime()
+	 */
+	public static void reportRecovery(long startNanos) {
+		recoveryNanos += TimeUtils.nanoTime() - startNanos;
+		recoveredCount++;
+	}
+
+	/**
+	 * Gets the time spent recovering resources since last context loss.
+	 *
+	 * @return the recovery time in milliseconds
+	 */
+	public static float getRecoveryTime() {
+		return recoveryNanos / 1000000f;
+	}
+
+	/**
+	 * Gets the count of resources recovered since last context loss.
+	 *
+	 * @return the count of resources recovered
+	 */
+	public static int getRecoveredCount() {
+		return recoveredCount;
+	}
+}
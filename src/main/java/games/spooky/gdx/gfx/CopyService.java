@@ -0,0 +1,316 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.GLTexture;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Copies pixels the cheapest available way: glBlitFramebuffer between
+ * FrameBuffers with OpenGL (ES) 3.0, glCopyTexSubImage2D into textures, and
+ * the Copy shader as a last resort (texture sources, no OpenGL (ES) 3.0, or
+ * color formats which may not be blitted one into the other, such as
+ * floating-point into fixed-point). Blits skip the fragment pipeline entirely
+ * on most drivers.
+ * <p>
+ * Blits may be scaled, for downsampling for instance, in which case they are
+ * filtered linearly. Only color is copied.
+ */
+public class CopyService implements Disposable {
+
+	private Copy copy = null;
+
+	private int blitCount = 0;
+	private int textureCopyCount = 0;
+	private int shaderCopyCount = 0;
+
+	/**
+	 * Tells whether FrameBuffers may be blitted in current context.
+	 *
+	 * @return true if blits are available, false otherwise
+	 */
+	public static boolean canBlit() {
+		return Gdx.gl30 != null;
+	}
+
+	/**
+	 * Copies given texture to given destination, stretched to cover it.
+	 * Textures may only be copied with the Copy shader.
+	 *
+	 * @param source
+	 *            the texture to copy
+	 * @param destination
+	 *            the FrameBuffer to copy to, null for the backbuffer
+	 */
+	public void copy(Texture source, FrameBuffer destination) {
+		if (copy == null)
+			copy = new Copy();
+		copy.render(source, destination);
+		shaderCopyCount++;
+	}
+
+	/**
+	 * Copies given FrameBuffer to given destination, stretched to cover it.
+	 * Only the meaningful part of BouncingBuffers' FrameBuffers is copied.
+	 *
+	 * @param source
+	 *            the FrameBuffer to copy
+	 * @param destination
+	 *            the FrameBuffer to copy to, null for the backbuffer
+	 */
+	public void copy(FrameBuffer source, FrameBuffer destination) {
+		copy(source, 0, 0, contentWidth(source), contentHeight(source), destination);
+	}
+
+	/**
+	 * Copies given FrameBuffer to a region of given destination, such as a
+	 * viewport of the backbuffer, stretched to cover it. Only the meaningful
+	 * part of BouncingBuffers' FrameBuffers is copied.
+	 *
+	 * @param source
+	 *            the FrameBuffer to copy
+	 * @param destination
+	 *            the FrameBuffer to copy to, null for the backbuffer
+	 * @param dstX
+	 *            the x of the region to copy to
+	 * @param dstY
+	 *            the y of the region to copy to
+	 * @param dstWidth
+	 *            the width of the region to copy to
+	 * @param dstHeight
+	 *            the height of the region to copy to
+	 */
+	public void copy(FrameBuffer source, FrameBuffer destination, int dstX, int dstY, int dstWidth, int dstHeight) {
+		copy(source, 0, 0, contentWidth(source), contentHeight(source), destination, dstX, dstY, dstWidth, dstHeight);
+	}
+
+	/**
+	 * Copies a region of given FrameBuffer to given destination, stretched to
+	 * cover it.
+	 *
+	 * @param source
+	 *            the FrameBuffer to copy
+	 * @param srcX
+	 *            the x of the region to copy
+	 * @param srcY
+	 *            the y of the region to copy
+	 * @param srcWidth
+	 *            the width of the region to copy
+	 * @param srcHeight
+	 *            the height of the region to copy
+	 * @param destination
+	 *            the FrameBuffer to copy to, null for the backbuffer
+	 */
+	public void copy(FrameBuffer source, int srcX, int srcY, int srcWidth, int srcHeight, FrameBuffer destination) {
+		int dstWidth = destination == null ? Gdx.graphics.getWidth() : destination.getWidth();
+		int dstHeight = destination == null ? Gdx.graphics.getHeight() : destination.getHeight();
+		copy(source, srcX, srcY, srcWidth, srcHeight, destination, 0, 0, dstWidth, dstHeight);
+	}
+
+	/**
+	 * Copies a region of given FrameBuffer to a region of given destination,
+	 * scaling if regions differ in size.
+	 *
+	 * @param source
+	 *            the FrameBuffer to copy
+	 * @param srcX
+	 *            the x of the region to copy
+	 * @param srcY
+	 *            the y of the region to copy
+	 * @param srcWidth
+	 *            the width of the region to copy
+	 * @param srcHeight
+	 *            the height of the region to copy
+	 * @param destination
+	 *            the FrameBuffer to copy to, null for the backbuffer
+	 * @param dstX
+	 *            the x of the region to copy to
+	 * @param dstY
+	 *            the y of the region to copy to
+	 * @param dstWidth
+	 *            the width of the region to copy to
+	 * @param dstHeight
+	 *            the height of the region to copy to
+	 */
+	public void copy(FrameBuffer source, int srcX, int srcY, int srcWidth, int srcHeight, FrameBuffer destination,
+			int dstX, int dstY, int dstWidth, int dstHeight) {
+		if (source == destination)
+			throw new GdxRuntimeException("Cannot copy a FrameBuffer onto itself");
+
+		boolean scaled = srcWidth != dstWidth || srcHeight != dstHeight;
+		boolean compatible = isFloatingPoint(source) == isFloatingPoint(destination);
+		if (source instanceof MultisampleFrameBuffer) {
+			// Samples are only reachable through a resolving blit
+			if (scaled || !canBlit() || !compatible)
+				throw new GdxRuntimeException(
+						"Multisampled FrameBuffers may only be copied unscaled by blitting, to a compatible format");
+		} else if (!canBlit() || !compatible || destination instanceof MultisampleFrameBuffer
+				|| (destination == null && Gdx.graphics.getBufferFormat().samples > 0)) {
+			copyWithShader(source, srcX, srcY, srcWidth, srcHeight, destination, dstX, dstY, dstWidth, dstHeight);
+			return;
+		}
+
+		if (destination == null) {
+			FrameBuffer.unbind();
+		} else {
+			FrameBufferStack.begin(destination);
+		}
+
+		// Blits are subject to scissor test and color mask
+		GLState.setScissorTest(false);
+		GLState.setColorMask(true, true, true, true);
+
+		GL30 gl = Gdx.gl30;
+		gl.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, source.getFramebufferHandle());
+		gl.glBlitFramebuffer(srcX, srcY, srcX + srcWidth, srcY + srcHeight, dstX, dstY, dstX + dstWidth,
+				dstY + dstHeight, GL20.GL_COLOR_BUFFER_BIT, scaled ? GL20.GL_LINEAR : GL20.GL_NEAREST);
+
+		// Bring read binding back in line with draw binding
+		if (destination == null) {
+			FrameBuffer.unbind();
+			FrameBufferStack.invalidate();
+		} else {
+			FrameBufferStack.rebind();
+			FrameBufferStack.end(destination);
+		}
+		blitCount++;
+	}
+
+	/**
+	 * Copies a region of given FrameBuffer into given texture, with
+	 * glCopyTexSubImage2D. Texture must be large enough, and its format
+	 * compatible with the FrameBuffer's.
+	 *
+	 * @param source
+	 *            the FrameBuffer to copy
+	 * @param srcX
+	 *            the x of the region to copy
+	 * @param srcY
+	 *            the y of the region to copy
+	 * @param destination
+	 *            the texture to copy to
+	 * @param dstX
+	 *            the x in texture to copy to
+	 * @param dstY
+	 *            the y in texture to copy to
+	 * @param width
+	 *            the width of the region
+	 * @param height
+	 *            the height of the region
+	 */
+	public void copyToTexture(FrameBuffer source, int srcX, int srcY, GLTexture destination, int dstX, int dstY,
+			int width, int height) {
+		if (source.getColorBufferTexture() == destination)
+			throw new GdxRuntimeException("Cannot copy a FrameBuffer onto its own texture");
+
+		FrameBufferStack.push(source);
+		GLState.bindTexture(destination, GLState.getActiveUnit());
+		Gdx.gl.glCopyTexSubImage2D(destination.glTarget, 0, dstX, dstY, srcX, srcY, width, height);
+		FrameBufferStack.pop();
+		textureCopyCount++;
+	}
+
+	/**
+	 * Gets the count of copies made with glBlitFramebuffer so far.
+	 *
+	 * @return the count of blits
+	 */
+	public int getBlitCount() {
+		return blitCount;
+	}
+
+	/**
+	 * Gets the count of copies made with glCopyTexSubImage2D so far.
+	 *
+	 * @return the count of copies into textures
+	 */
+	public int getTextureCopyCount() {
+		return textureCopyCount;
+	}
+
+	/**
+	 * Gets the count of copies made with the Copy shader so far.
+	 *
+	 * @return the count of shader copies
+	 */
+	public int getShaderCopyCount() {
+		return shaderCopyCount;
+	}
+
+	public void rebind() {
+		if (copy != null)
+			copy.rebind();
+	}
+
+	@Override
+	public void dispose() {
+		if (copy != null) {
+			copy.dispose();
+			copy = null;
+		}
+	}
+
+	private void copyWithShader(FrameBuffer source, int srcX, int srcY, int srcWidth, int srcHeight,
+			FrameBuffer destination, int dstX, int dstY, int dstWidth, int dstHeight) {
+		// Copy shader only reads the whole texture, up to its UV scale
+		if (srcX != 0 || srcY != 0 || srcWidth != contentWidth(source) || srcHeight != contentHeight(source))
+			throw new GdxRuntimeException("Copying a region requires OpenGL (ES) 3.0");
+		int dstFullWidth = destination == null ? Gdx.graphics.getWidth() : destination.getWidth();
+		int dstFullHeight = destination == null ? Gdx.graphics.getHeight() : destination.getHeight();
+		if (dstX == 0 && dstY == 0 && dstWidth == dstFullWidth && dstHeight == dstFullHeight) {
+			copy(source.getColorBufferTexture(), destination);
+		} else {
+			// Draw to the region only, as a viewport
+			FrameBufferStack.push(destination, dstX, dstY, dstWidth, dstHeight);
+			copy(source.getColorBufferTexture(), null);
+			FrameBufferStack.pop();
+		}
+	}
+
+	private static boolean isFloatingPoint(FrameBuffer buffer) {
+		// Backbuffer and Pixmap.Format FrameBuffers are fixed-point
+		RenderFormat format = buffer == null ? null : RenderFormat.of(buffer);
+		return format != null && format.isFloatingPoint();
+	}
+
+	private static int contentWidth(FrameBuffer buffer) {
+		Texture texture = buffer.getColorBufferTexture();
+		if (texture instanceof BouncingBuffer.SubTexture)
+			return Math.round(buffer.getWidth() * ((BouncingBuffer.SubTexture) texture).getUScale());
+		return buffer.getWidth();
+	}
+
+	private static int contentHeight(FrameBuffer buffer) {
+		Texture texture = buffer.getColorBufferTexture();
+		if (texture instanceof BouncingBuffer.SubTexture)
+			return Math.round(buffer.getHeight() * ((BouncingBuffer.SubTexture) texture).getVScale());
+		return buffer.getHeight();
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.Graphics.BufferFormat;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+
+import games.spooky.gdx.gfx.shader.ColorShaderParameter;
+import games.spooky.gdx.gfx.shader.PointwiseShaderEffect;
+import games.spooky.gdx.gfx.shader.TextureShaderParameter;
+
+/**
+ * An ordered dithering effect, adding a precomputed 8x8 Bayer pattern to
+ * colors before they are written to a lower precision target, so that
+ * gradients are traded for fine noise instead of bands. Being pointwise, it
+ * is fused into the pass preceding it by MultiVisualEffect.
+ * <p>
+ * Dithering amplitude is one quantization step of the target, per channel:
+ * see {@link #setFormat(Format)} and {@link #setBits(int, int, int, int)}.
+ */
+public class Dither extends PointwiseShaderEffect {
+
+	/** Size of the dithering pattern, in pixels. */
+	public static final int PatternSize = 8;
+
+	static final String Dither = "uniform sampler2D u_ditherPattern;\n"
+			+ "uniform vec4 u_ditherStep;\n"
+			+ "\n"
+			+ "vec4 transform(vec4 color)\n"
+			+ "{\n"
+			+ "	float threshold = texture2D(u_ditherPattern, gl_FragCoord.xy / " + PatternSize + ".0).r;\n"
+			+ "	return color + (threshold - 0.5) * u_ditherStep;\n"
+			+ "}";
+
+	// Quadrants of a Bayer matrix, as in the 2x2 one: 0 2 / 3 1
+	private static final int[] QuadrantOrder = { 0, 2, 3, 1 };
+
+	private final Pixmap patternPixmap;
+	private final Texture patternTexture;
+
+	private final TextureShaderParameter pattern;
+	private final ColorShaderParameter step;
+
+	private final Color tmpStep = new Color();
+
+	public Dither() {
+		super(Dither);
+
+		patternPixmap = createPattern();
+		// Managed, so that pattern survives context loss
+		patternTexture = new Texture(new PixmapTextureData(patternPixmap, null, false, false, true));
+		patternTexture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+		patternTexture.setWrap(TextureWrap.Repeat, TextureWrap.Repeat);
+		GLState.invalidateTextures();
+
+		pattern = registerTexture("u_ditherPattern");
+		pattern.setValue(patternTexture);
+		step = registerParameter("u_ditherStep", Color.CLEAR);
+
+		setFormat(Format.RGB565);
+	}
+
+	/**
+	 * Sets dithering amplitude from the precision of given target format.
+	 *
+	 * @param format
+	 *            the format of the target written to
+	 */
+	public void setFormat(Format format) {
+		switch (format) {
+		case RGB565:
+			setBits(5, 6, 5, 0);
+			break;
+		case RGBA4444:
+			setBits(4, 4, 4, 4);
+			break;
+		default:
+			setBits(8, 8, 8, 8);
+			break;
+		}
+	}
+
+	/**
+	 * Sets dithering amplitude from the precision of given buffer format,
+	 * typically the backbuffer's.
+	 *
+	 * @param format
+	 *            the format of the buffer written to
+	 */
+	public void setFormat(BufferFormat format) {
+		setBits(format.r, format.g, format.b, format.a);
+	}
+
+	/**
+	 * Sets dithering amplitude from the bit count of each channel of the
+	 * target. Channels of 0 bits are not dithered.
+	 *
+	 * @param r
+	 *            the bits of red channel
+	 * @param g
+	 *            the bits of green channel
+	 * @param b
+	 *            the bits of blue channel
+	 * @param a
+	 *            the bits of alpha channel
+	 */
+	public void setBits(int r, int g, int b, int a) {
+		step.setValue(tmpStep.set(quantum(r), quantum(g), quantum(b), quantum(a)));
+	}
+
+	public Color getStep() {
+		return step.getValue();
+	}
+
+	/**
+	 * Tells whether this effect currently leaves its source unchanged, that is
+	 * whether no channel is dithered.
+	 */
+	@Override
+	public boolean isIdentity() {
+		Color value = step.getValue();
+		return value.r == 0f && value.g == 0f && value.b == 0f && value.a == 0f;
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		patternTexture.dispose();
+		patternPixmap.dispose();
+	}
+
+	static float quantum(int bits) {
+		return bits <= 0 ? 0f : 1f / ((1 << bits) - 1);
+	}
+
+	static Pixmap createPattern() {
+		Pixmap pixmap = new Pixmap(PatternSize, PatternSize, Format.RGBA8888);
+		for (int y = 0; y < PatternSize; y++) {
+			for (int x = 0; x < PatternSize; x++) {
+				// Thresholds centered in their interval, so that pattern averages 0.5
+				int value = (int) ((bayer(x, y, PatternSize) + 0.5f) * 255f / (PatternSize * PatternSize));
+				pixmap.drawPixel(x, y, (value << 24) | (value << 16) | (value << 8) | 0xff);
+			}
+		}
+		return pixmap;
+	}
+
+	/**
+	 * Computes the index of a cell of a Bayer matrix of given size (a power
+	 * of two), from 0 to size^2 - 1.
+	 */
+	private static int bayer(int x, int y, int size) {
+		if (size == 1)
+			return 0;
+		int half = size / 2;
+		int quadrant = (x < half ? 0 : 1) + (y < half ? 0 : 1) * 2;
+		return 4 * bayer(x % half, y % half, half) + QuadrantOrder[quadrant];
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import games.spooky.gdx.gfx.shader.ShaderProgramRegistry;
+
+/**
+ * The EffectWarmUp gets effects ready ahead of their first use, typically
+ * during a loading screen. Registered ShaderPrograms are compiled through the
+ * ShaderProgramRegistry and registered effects are rendered once into a 1x1
+ * FrameBuffer, so that drivers do their lazy work before the effect actually
+ * shows. Work is spread over several frames, spending at most a given time
+ * per call to update().
+ * <p>
+ * Compiled ShaderPrograms are held until this EffectWarmUp is disposed, so
+ * that effects created afterwards get them from the registry without
+ * compiling.
+ */
+public class EffectWarmUp implements Disposable {
+
+	private final Array<Task> tasks = new Array<Task>();
+	private final Array<ShaderProgram> programs = new Array<ShaderProgram>();
+
+	private float budget = 4f;
+	private int completed = 0;
+
+	private FrameBuffer buffer = null;
+	private Texture texture = null;
+
+	public EffectWarmUp() {
+		super();
+	}
+
+	public float getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the time to spend at most on each call to update(). At least one
+	 * task is performed on each call anyway.
+	 *
+	 * @param budget
+	 *            the time budget in milliseconds
+	 */
+	public void setBudget(float budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Queues compilation of a ShaderProgram.
+	 *
+	 * @param vertex
+	 *            the text for vertex shader
+	 * @param fragment
+	 *            the text for fragment shader
+	 */
+	public void addProgram(String vertex, String fragment) {
+		addProgram(vertex, fragment, "");
+	}
+
+	/**
+	 * Queues compilation of a ShaderProgram with given defines.
+	 *
+	 * @param vertex
+	 *            the text for vertex shader
+	 * @param fragment
+	 *            the text for fragment shader
+	 * @param defines
+	 *            GLSL code inserted at the beginning of both shaders
+	 */
+	public void addProgram(final String vertex, final String fragment, final String defines) {
+		tasks.add(new Task() {
+			@Override
+			public void run() {
+				programs.add(ShaderProgramRegistry.acquire(vertex, fragment, defines));
+			}
+		});
+	}
+
+	/**
+	 * Queues a dummy rendering of given VisualEffect.
+	 *
+	 * @param effect
+	 *            the VisualEffect to warm up
+	 */
+	public void addEffect(final VisualEffect effect) {
+		tasks.add(new Task() {
+			@Override
+			public void run() {
+				if (buffer == null) {
+					buffer = new FrameBuffer(Format.RGBA8888, 1, 1, false);
+					Pixmap pixmap = new Pixmap(1, 1, Format.RGBA8888);
+					texture = new Texture(pixmap);
+					pixmap.dispose();
+					// Building bound textures and the default FrameBuffer behind our back
+					GLState.invalidateTextures();
+					FrameBufferStack.invalidate();
+				}
+				effect.render(texture, buffer);
+			}
+		});
+	}
+
+	/**
+	 * Performs queued tasks within configured time budget.
+	 *
+	 * @return true if all tasks are done, false otherwise
+	 */
+	public boolean update() {
+		return update(budget);
+	}
+
+	/**
+	 * Performs queued tasks within given time budget. At least one task is
+	 * performed anyway.
+	 *
+	 * @param budget
+	 *            the time budget in milliseconds
+	 * @return true if all tasks are done, false otherwise
+	 */
+	public boolean update(float budget) {
+		long start = TimeUtils.nanoTime();
+		long limit = (long) (budget * 1000000f);
+
+		while (completed < tasks.size) {
+			tasks.get(completed++).run();
+			if (TimeUtils.nanoTime() - start >= limit)
+				break;
+		}
+
+		if (isFinished())
+			disposeDummies();
+
+		return isFinished();
+	}
+
+	public boolean isFinished() {
+		return completed >= tasks.size;
+	}
+
+	public int getTaskCount() {
+		return tasks.size;
+	}
+
+	public int getCompletedCount() {
+		return completed;
+	}
+
+	/**
+	 * Gets the progress of the warm-up, handy to feed some progress bar.
+	 *
+	 * @return the ratio of tasks done, between 0 and 1
+	 */
+	public float getProgress() {
+		return tasks.size == 0 ? 1f : (float) completed / tasks.size;
+	}
+
+	@Override
+	public void dispose() {
+		disposeDummies();
+		for (ShaderProgram program : programs)
+			ShaderProgramRegistry.release(program);
+		programs.clear();
+	}
+
+	private void disposeDummies() {
+		if (buffer != null) {
+			buffer.dispose();
+			texture.dispose();
+			buffer = null;
+			texture = null;
+		}
+	}
+
+	private interface Task {
+		void run();
+	}
+}
@@ -37,6 +37,7 @@ public class FrameBufferFactory {
 	private boolean alphaChannel;
 	private boolean depth;
 	private Pixmap.Format format;
+	private RenderFormat renderFormat;
 
 	public FrameBufferFactory() {
 		super();
@@ -47,6 +48,7 @@ public class FrameBufferFactory {
 		alphaChannel = true;
 		depth = true;
 		format = null;
+		renderFormat = null;
 	}
 
 	public int getWidth() {
@@ -103,12 +105,38 @@ public class FrameBufferFactory {
 		return format;
 	}
 
+	public RenderFormat getRenderFormat() {
+		return renderFormat;
+	}
+
+	/**
+	 * Set the RenderFormat FrameBuffers are created with, instead of the
+	 * Pixmap.Format computed from the use32bits and alphaChannel properties.
+	 * Unsupported formats fall back to the closest supported one. BouncingBuffers
+	 * only accept RenderFormats having a Pixmap.Format equivalent.
+	 * 
+	 * @param renderFormat
+	 *            the RenderFormat to use, or null to use the Pixmap.Format
+	 */
+	public void setRenderFormat(RenderFormat renderFormat) {
+		this.renderFormat = renderFormat;
+	}
+
 	public FrameBuffer createFrameBuffer() {
-		return new FrameBuffer(getFormat(), width, height, depth);
+		if (renderFormat != null)
+			return renderFormat.createFrameBuffer(width, height, depth);
+		FrameBuffer buffer = new FrameBuffer(getFormat(), width, height, depth);
+		// Building bound its texture and the default FrameBuffer behind our back
+		GLState.invalidateTextures();
+		FrameBufferStack.invalidate();
+		return buffer;
 	}
 
 	public BouncingBuffer createBouncingBuffer() {
-		return new BouncingBuffer(getFormat(), width, height, depth);
+		Pixmap.Format format = getFormat();
+		if (renderFormat != null && renderFormat.resolve().pixmapFormat != null)
+			format = renderFormat.resolve().pixmapFormat;
+		return new BouncingBuffer(format, width, height, depth);
 	}
 
 	private static Format defineFormat(boolean use32Bits, boolean alphaChannel) {
@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A stack of FrameBuffer bindings, along with their viewports. Unlike
+ * FrameBuffer.end(), which always binds the default framebuffer back,
+ * popping restores whatever was bound below. GL calls are only issued when
+ * the actual binding or viewport changes.
+ * <p>
+ * Within a batch (between beginBatch() and endBatch()), pops are not applied
+ * until next push or flush(), so that consecutive passes go from one
+ * FrameBuffer to the next without visiting the default framebuffer. Code
+ * drawing to "whatever is bound" within a batch must call flush() first.
+ * flush() leaves bindings it did not defer alone.
+ * <p>
+ * The stack keeps track of the bindings it makes itself. Should anything else
+ * bind a framebuffer or set the viewport meanwhile (raw FrameBuffer.begin()
+ * and end() included), invalidate() must be called afterwards.
+ */
+public final class FrameBufferStack {
+
+	private FrameBufferStack() {
+	}
+
+	// Bindings below current one, 4 viewport values per binding
+	private static final Array<FrameBuffer> buffers = new Array<FrameBuffer>();
+	private static final IntArray viewports = new IntArray();
+
+	// Binding wanted, null buffer and negative width for the default framebuffer and viewport
+	private static FrameBuffer current = null;
+	private static int x = 0, y = 0, width = -1, height = -1;
+
+	// Binding actually made
+	private static boolean known = false;
+	private static FrameBuffer bound = null;
+	private static int boundX, boundY, boundWidth, boundHeight;
+
+	private static int batchDepth = 0;
+
+	// Whether some pop was deferred and not applied yet
+	private static boolean pending = false;
+
+	/**
+	 * Binds given FrameBuffer, with a viewport covering it entirely.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer to bind
+	 */
+	public static void push(FrameBuffer buffer) {
+		push(buffer, 0, 0, buffer.getWidth(), buffer.getHeight());
+	}
+
+	/**
+	 * Binds given FrameBuffer, with given viewport.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer to bind
+	 * @param x
+	 *            the viewport x
+	 * @param y
+	 *            the viewport y
+	 * @param width
+	 *            the viewport width
+	 * @param height
+	 *            the viewport height
+	 */
+	public static void push(FrameBuffer buffer, int x, int y, int width, int height) {
+		buffers.add(current);
+		viewports.add(FrameBufferStack.x);
+		viewports.add(FrameBufferStack.y);
+		viewports.add(FrameBufferStack.width);
+		viewports.add(FrameBufferStack.height);
+
+		current = buffer;
+		FrameBufferStack.x = x;
+		FrameBufferStack.y = y;
+		FrameBufferStack.width = width;
+		FrameBufferStack.height = height;
+
+		apply();
+	}
+
+	/**
+	 * Restores the binding and viewport which were current before last push.
+	 */
+	public static void pop() {
+		if (buffers.size == 0)
+			throw new GdxRuntimeException("FrameBufferStack is empty");
+		int i = viewports.size - 4;
+		current = buffers.pop();
+		x = viewports.get(i);
+		y = viewports.get(i + 1);
+		width = viewports.get(i + 2);
+		height = viewports.get(i + 3);
+		viewports.truncate(i);
+
+		if (batchDepth == 0)
+			apply();
+		else
+			pending = true;
+	}
+
+	/**
+	 * Restores the binding which was current before last push, with given
+	 * viewport.
+	 *
+	 * @param x
+	 *            the viewport x
+	 * @param y
+	 *            the viewport y
+	 * @param width
+	 *            the viewport width
+	 * @param height
+	 *            the viewport height
+	 */
+	public static void pop(int x, int y, int width, int height) {
+		if (buffers.size == 0)
+			throw new GdxRuntimeException("FrameBufferStack is empty");
+		current = buffers.pop();
+		viewports.truncate(viewports.size - 4);
+		FrameBufferStack.x = x;
+		FrameBufferStack.y = y;
+		FrameBufferStack.width = width;
+		FrameBufferStack.height = height;
+
+		if (batchDepth == 0)
+			apply();
+		else
+			pending = true;
+	}
+
+	/**
+	 * Begins drawing to given FrameBuffer through the stack. FrameBuffers
+	 * which are {@link StackedFrameBuffer}s are begun the regular way, as they
+	 * use the stack by themselves.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer to draw to
+	 */
+	public static void begin(FrameBuffer buffer) {
+		if (buffer instanceof StackedFrameBuffer)
+			buffer.begin();
+		else
+			push(buffer);
+	}
+
+	/**
+	 * Ends drawing to given FrameBuffer through the stack.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer passed to {@link #begin(FrameBuffer)}
+	 */
+	public static void end(FrameBuffer buffer) {
+		if (buffer instanceof StackedFrameBuffer)
+			buffer.end();
+		else
+			pop();
+	}
+
+	/**
+	 * Gets the FrameBuffer currently bound, as far as the stack knows.
+	 *
+	 * @return the current FrameBuffer, null for the default framebuffer
+	 */
+	public static FrameBuffer getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Gets the count of bindings pushed and not popped yet.
+	 *
+	 * @return the depth of the stack
+	 */
+	public static int getDepth() {
+		return buffers.size;
+	}
+
+	/**
+	 * Begins a batch of passes, in which pops are deferred. Batches may be
+	 * nested.
+	 */
+	public static void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Ends a batch of passes, applying any deferred pop.
+	 */
+	public static void endBatch() {
+		if (batchDepth == 0)
+			throw new GdxRuntimeException("No batch begun");
+		if (--batchDepth == 0 && pending)
+			apply();
+	}
+
+	/**
+	 * Applies any deferred pop, so that current binding is actually bound.
+	 * Does nothing otherwise: in particular, a binding made by other means
+	 * (such as FrameBuffer.begin()) is left alone.
+	 */
+	public static void flush() {
+		if (pending)
+			apply();
+	}
+
+	/**
+	 * Binds current FrameBuffer and viewport again, whatever is actually
+	 * bound. To be called after framebuffers have been bound by other means
+	 * while drawing through the stack.
+	 */
+	public static void rebind() {
+		known = false;
+		apply();
+	}
+
+	/**
+	 * Forgets what is actually bound, so that next binding issues GL calls
+	 * anyway. To be called after framebuffers have been bound by other means,
+	 * or after OpenGL context loss.
+	 */
+	public static void invalidate() {
+		known = false;
+	}
+
+	private static void apply() {
+		if (!known || bound != current) {
+			if (current == null)
+				FrameBuffer.unbind();
+			else
+				current.bind();
+			bound = current;
+		}
+
+		int vx = x, vy = y, vw = width, vh = height;
+		if (vw < 0) {
+			vx = 0;
+			vy = 0;
+			vw = Gdx.graphics.getWidth();
+			vh = Gdx.graphics.getHeight();
+		}
+		if (!known || vx != boundX || vy != boundY || vw != boundWidth || vh != boundHeight) {
+			Gdx.gl.glViewport(vx, vy, vw, vh);
+			boundX = vx;
+			boundY = vy;
+			boundWidth = vw;
+			boundHeight = vh;
+		}
+
+		known = true;
+		pending = false;
+	}
+
+	/**
+	 * Marks FrameBuffers whose begin() and end() already go through the
+	 * FrameBufferStack, possibly doing more on the side.
+	 */
+	public interface StackedFrameBuffer {
+	}
+}
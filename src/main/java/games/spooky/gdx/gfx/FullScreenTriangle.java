@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Mesh.VertexDataType;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Shared geometry covering the whole screen with a single triangle, oversized
+ * so that the screen fits inside it. Unlike a two-triangle quad, no pixel is
+ * shaded twice along a diagonal.
+ * <p>
+ * The Mesh lives in a vertex buffer object (with a vertex array object when
+ * GL30 is available), one per Application, reference-counted. Being managed
+ * by libGDX, it survives context loss.
+ */
+public final class FullScreenTriangle {
+
+	private FullScreenTriangle() {
+	}
+
+	private static final ObjectMap<Application, Entry> entries = new ObjectMap<Application, Entry>();
+
+	/**
+	 * Acquires the full-screen triangle of current Application, creating it
+	 * if needed. Must be released with {@link #release(Mesh)} when not needed
+	 * anymore.
+	 *
+	 * @return the full-screen triangle Mesh
+	 */
+	public static synchronized Mesh acquire() {
+		Entry entry = entries.get(Gdx.app);
+		if (entry == null) {
+			entry = new Entry(create());
+			entries.put(Gdx.app, entry);
+		}
+		entry.references++;
+		return entry.mesh;
+	}
+
+	/**
+	 * Releases a full-screen triangle Mesh. It is disposed once released as
+	 * many times as it was acquired.
+	 *
+	 * @param mesh
+	 *            the Mesh obtained from {@link #acquire()}
+	 */
+	public static synchronized void release(Mesh mesh) {
+		for (ObjectMap.Entry<Application, Entry> e : entries) {
+			Entry entry = e.value;
+			if (entry.mesh == mesh) {
+				if (--entry.references <= 0) {
+					entries.remove(e.key);
+					mesh.dispose();
+				}
+				return;
+			}
+		}
+		throw new GdxRuntimeException("Mesh was not acquired from FullScreenTriangle");
+	}
+
+	/**
+	 * Draws a full-screen triangle Mesh with given ShaderProgram, in use.
+	 *
+	 * @param mesh
+	 *            the Mesh obtained from {@link #acquire()}
+	 * @param program
+	 *            the ShaderProgram to draw with
+	 */
+	public static void render(Mesh mesh, ShaderProgram program) {
+		mesh.render(program, GL20.GL_TRIANGLES, 0, 3);
+	}
+
+	private static Mesh create() {
+		VertexDataType type = Gdx.gl30 != null ? VertexDataType.VertexBufferObjectWithVAO
+				: VertexDataType.VertexBufferObject;
+		Mesh mesh = new Mesh(type, true, 3, 0,
+				new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+				new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+
+		// @formatter:off
+		float[] verts = {
+				// vertex    texture
+				  -1, -1,    0f, 0f,
+				   3, -1,    2f, 0f,
+				  -1,  3,    0f, 2f,
+		};
+		// @formatter:on
+
+		mesh.setVertices(verts);
+		return mesh;
+	}
+
+	private static class Entry {
+
+		final Mesh mesh;
+		int references = 0;
+
+		Entry(Mesh mesh) {
+			this.mesh = mesh;
+		}
+	}
+}
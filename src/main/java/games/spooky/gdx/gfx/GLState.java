@@ -0,0 +1,370 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GLTexture;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+
+import games.spooky.gdx.gfx.shader.ShaderEffect;
+
+/**
+ * A shadow copy of the OpenGL state gdx-gfx cares about: blending, depth
+ * test, scissor test and box, color mask, face culling, program in use,
+ * textures bound and active texture unit. State changes made through this class skip redundant
+ * GL calls, and queries are answered without asking GL whenever the state is
+ * known.
+ * <p>
+ * Only changes made through this class are tracked. Whenever other code
+ * (SpriteBatch, Stage, raw GL calls...) may have changed the state,
+ * invalidate() must be called so that the state is set again on next use.
+ * gdx-gfx does so itself when entering a scope (rendering a ShaderEffect,
+ * MultiVisualEffect or RenderGraph from outside any other), and after
+ * rendering any effect it does not know of.
+ */
+public final class GLState {
+
+	private GLState() {
+	}
+
+	private static final int UNKNOWN = -1;
+	private static final int DISABLED = 0;
+	private static final int ENABLED = 1;
+
+	private static int blending = UNKNOWN;
+	private static int blendSrc = UNKNOWN;
+	private static int blendDst = UNKNOWN;
+	private static int depthTest = UNKNOWN;
+	private static int scissorTest = UNKNOWN;
+	private static int cullFace = UNKNOWN;
+	private static int cullFaceMode = UNKNOWN;
+	private static int colorMask = UNKNOWN;
+	private static int scissorX, scissorY, scissorWidth = UNKNOWN, scissorHeight;
+
+	private static ShaderProgram program = null;
+
+	private static int activeUnit = UNKNOWN;
+	private static GLTexture[] textures = new GLTexture[8];
+	private static int[] textureHandles = new int[8];
+
+	private static int scopeDepth = 0;
+
+	// Caller's state, captured within outermost scope before first change then given back
+	private static int callerBlending = UNKNOWN;
+	private static int callerDepthTest = UNKNOWN;
+	private static int callerScissorTest = UNKNOWN;
+
+	/**
+	 * Forgets all state, so that it gets set again on next use. To be called
+	 * whenever other code may have changed OpenGL state.
+	 */
+	public static void invalidate() {
+		blending = blendSrc = blendDst = UNKNOWN;
+		depthTest = scissorTest = cullFace = cullFaceMode = UNKNOWN;
+		colorMask = scissorWidth = UNKNOWN;
+		program = null;
+		activeUnit = UNKNOWN;
+		for (int i = 0; i < textures.length; i++)
+			textures[i] = null;
+	}
+
+	/**
+	 * Forgets texture bindings and active texture unit only. To be called
+	 * whenever other code may have bound textures.
+	 */
+	public static void invalidateTextures() {
+		activeUnit = UNKNOWN;
+		for (int i = 0; i < textures.length; i++)
+			textures[i] = null;
+	}
+
+	/**
+	 * Begins a scope in which state is trusted. Outermost scope invalidates
+	 * state, as anything may have happened since last scope.
+	 */
+	public static void beginScope() {
+		if (scopeDepth++ == 0)
+			invalidate();
+	}
+
+	/**
+	 * Ends a scope begun with beginScope(). Outermost scope gives back the
+	 * blending, depth test and scissor test found before they were first
+	 * changed within it, as effects set them to their own RenderState. Blend
+	 * function and scissor box are not given back.
+	 */
+	public static void endScope() {
+		if (--scopeDepth == 0) {
+			if (callerBlending != UNKNOWN)
+				blending = set(GL20.GL_BLEND, blending, callerBlending == ENABLED);
+			if (callerDepthTest != UNKNOWN)
+				depthTest = set(GL20.GL_DEPTH_TEST, depthTest, callerDepthTest == ENABLED);
+			if (callerScissorTest != UNKNOWN)
+				scissorTest = set(GL20.GL_SCISSOR_TEST, scissorTest, callerScissorTest == ENABLED);
+			callerBlending = callerDepthTest = callerScissorTest = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Tells whether some scope is begun, that is whether state is trusted.
+	 */
+	static boolean isInScope() {
+		return scopeDepth > 0;
+	}
+
+	public static boolean isBlendingEnabled() {
+		if (blending == UNKNOWN)
+			blending = query(GL20.GL_BLEND);
+		return blending == ENABLED;
+	}
+
+	public static void setBlending(boolean enabled) {
+		if (scopeDepth > 0 && callerBlending == UNKNOWN)
+			callerBlending = isBlendingEnabled() ? ENABLED : DISABLED;
+		blending = set(GL20.GL_BLEND, blending, enabled);
+	}
+
+	/**
+	 * Sets blending function, as glBlendFunc does.
+	 *
+	 * @param src
+	 *            the source factor
+	 * @param dst
+	 *            the destination factor
+	 */
+	public static void setBlendFunction(int src, int dst) {
+		if (src != blendSrc || dst != blendDst) {
+			Gdx.gl.glBlendFunc(src, dst);
+			blendSrc = src;
+			blendDst = dst;
+		}
+	}
+
+	public static boolean isDepthTestEnabled() {
+		if (depthTest == UNKNOWN)
+			depthTest = query(GL20.GL_DEPTH_TEST);
+		return depthTest == ENABLED;
+	}
+
+	public static void setDepthTest(boolean enabled) {
+		if (scopeDepth > 0 && callerDepthTest == UNKNOWN)
+			callerDepthTest = isDepthTestEnabled() ? ENABLED : DISABLED;
+		depthTest = set(GL20.GL_DEPTH_TEST, depthTest, enabled);
+	}
+
+	public static boolean isScissorTestEnabled() {
+		if (scissorTest == UNKNOWN)
+			scissorTest = query(GL20.GL_SCISSOR_TEST);
+		return scissorTest == ENABLED;
+	}
+
+	public static void setScissorTest(boolean enabled) {
+		if (scopeDepth > 0 && callerScissorTest == UNKNOWN)
+			callerScissorTest = isScissorTestEnabled() ? ENABLED : DISABLED;
+		scissorTest = set(GL20.GL_SCISSOR_TEST, scissorTest, enabled);
+	}
+
+	/**
+	 * Sets the scissor box, as glScissor does.
+	 *
+	 * @param x
+	 *            the box x
+	 * @param y
+	 *            the box y
+	 * @param width
+	 *            the box width
+	 * @param height
+	 *            the box height
+	 */
+	public static void setScissor(int x, int y, int width, int height) {
+		if (x != scissorX || y != scissorY || width != scissorWidth || height != scissorHeight) {
+			Gdx.gl.glScissor(x, y, width, height);
+			scissorX = x;
+			scissorY = y;
+			scissorWidth = width;
+			scissorHeight = height;
+		}
+	}
+
+	/**
+	 * Sets which color components are written, as glColorMask does.
+	 *
+	 * @param red
+	 *            whether red is written
+	 * @param green
+	 *            whether green is written
+	 * @param blue
+	 *            whether blue is written
+	 * @param alpha
+	 *            whether alpha is written
+	 */
+	public static void setColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		int mask = (red ? 1 : 0) | (green ? 2 : 0) | (blue ? 4 : 0) | (alpha ? 8 : 0);
+		if (mask != colorMask) {
+			Gdx.gl.glColorMask(red, green, blue, alpha);
+			colorMask = mask;
+		}
+	}
+
+	public static boolean isCullFaceEnabled() {
+		if (cullFace == UNKNOWN)
+			cullFace = query(GL20.GL_CULL_FACE);
+		return cullFace == ENABLED;
+	}
+
+	public static void setCullFace(boolean enabled) {
+		cullFace = set(GL20.GL_CULL_FACE, cullFace, enabled);
+	}
+
+	/**
+	 * Sets which faces are culled, as glCullFace does.
+	 *
+	 * @param mode
+	 *            GL_FRONT, GL_BACK or GL_FRONT_AND_BACK
+	 */
+	public static void setCullFaceMode(int mode) {
+		if (mode != cullFaceMode) {
+			Gdx.gl.glCullFace(mode);
+			cullFaceMode = mode;
+		}
+	}
+
+	/**
+	 * Gets the ShaderProgram in use, as far as known.
+	 *
+	 * @return the ShaderProgram in use, null if unknown
+	 */
+	public static ShaderProgram getProgram() {
+		return program;
+	}
+
+	/**
+	 * Uses given ShaderProgram, unless already in use.
+	 *
+	 * @param program
+	 *            the ShaderProgram to use
+	 */
+	public static void useProgram(ShaderProgram program) {
+		if (program != GLState.program) {
+			program.begin();
+			GLState.program = program;
+		}
+	}
+
+	/**
+	 * Forgets which ShaderProgram is in use. To be called after ShaderProgram
+	 * has been changed by other means, such as ShaderProgram.end().
+	 */
+	public static void invalidateProgram() {
+		program = null;
+	}
+
+	/**
+	 * Gets the active texture unit, as far as known.
+	 *
+	 * @return the active texture unit, -1 if unknown
+	 */
+	public static int getActiveUnit() {
+		return activeUnit;
+	}
+
+	/**
+	 * Activates given texture unit, unless already active.
+	 *
+	 * @param unit
+	 *            the texture unit, starting from 0
+	 */
+	public static void setActiveUnit(int unit) {
+		if (unit != activeUnit) {
+			Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0 + unit);
+			activeUnit = unit;
+		}
+	}
+
+	/**
+	 * Gets the texture bound to given unit, as far as known.
+	 *
+	 * @param unit
+	 *            the texture unit, starting from 0
+	 * @return the texture bound, null if unknown
+	 */
+	public static GLTexture getTexture(int unit) {
+		return unit < textures.length ? textures[unit] : null;
+	}
+
+	/**
+	 * Binds given texture to given unit, unless already bound. Active texture
+	 * unit is changed only if needed, thus may be left anywhere.
+	 *
+	 * @param texture
+	 *            the texture to bind
+	 * @param unit
+	 *            the texture unit, starting from 0
+	 */
+	public static void bindTexture(GLTexture texture, int unit) {
+		if (unit >= textures.length) {
+			GLTexture[] newTextures = new GLTexture[Math.max(unit + 1, textures.length * 2)];
+			int[] newHandles = new int[newTextures.length];
+			System.arraycopy(textures, 0, newTextures, 0, textures.length);
+			System.arraycopy(textureHandles, 0, newHandles, 0, textureHandles.length);
+			textures = newTextures;
+			textureHandles = newHandles;
+		}
+
+		// Handle may change along with GL context
+		int handle = texture.getTextureObjectHandle();
+		if (textures[unit] != texture || textureHandles[unit] != handle) {
+			setActiveUnit(unit);
+			Gdx.gl.glBindTexture(texture.glTarget, handle);
+			textures[unit] = texture;
+			textureHandles[unit] = handle;
+		}
+	}
+
+	/**
+	 * Tells whether given effect only changes state through GLState, in
+	 * which case state may still be trusted after it rendered. ShaderEffects
+	 * not binding their textures through GLState forget texture state by
+	 * themselves after rendering.
+	 */
+	static boolean isTracked(VisualEffect effect) {
+		return effect instanceof ShaderEffect || effect instanceof MultiVisualEffect || effect instanceof RenderGraph;
+	}
+
+	private static int query(int capability) {
+		return Gdx.gl.glIsEnabled(capability) ? ENABLED : DISABLED;
+	}
+
+	private static int set(int capability, int state, boolean enabled) {
+		int wanted = enabled ? ENABLED : DISABLED;
+		if (state != wanted) {
+			if (enabled)
+				Gdx.gl.glEnable(capability);
+			else
+				Gdx.gl.glDisable(capability);
+		}
+		return wanted;
+	}
+}
@@ -34,11 +34,15 @@ public class GLUtils {
 	private static ByteBuffer byteBuffer = BufferUtils.newByteBuffer(32);
 
 	/**
-	 * Checks if blending is enabled in current GL context.
+	 * Checks if blending is enabled in current GL context. Answered from
+	 * GLState while an effect renders, as state is trusted then. Queried from
+	 * GL otherwise, as anything may have changed it.
 	 *
 	 * @return true if blending is enabled, false otherwise
 	 */
 	public static boolean isBlendingEnabled() {
+		if (GLState.isInScope())
+			return GLState.isBlendingEnabled();
 		Gdx.gl20.glGetBooleanv(GL20.GL_BLEND, byteBuffer);
 		boolean enabled = (byteBuffer.get() == 1);
 		byteBuffer.clear();
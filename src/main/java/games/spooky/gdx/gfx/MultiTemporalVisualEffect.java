@@ -112,6 +112,10 @@ public class MultiTemporalVisualEffect extends MultiTemporalEffect implements Vi
 		return visual.getBuffer();
 	}
 
+	public void resize(int width, int height) {
+		visual.resize(width, height);
+	}
+
 	public void capture() {
 		visual.capture();
 	}
@@ -120,4 +124,20 @@ public class MultiTemporalVisualEffect extends MultiTemporalEffect implements Vi
 		return visual.endCapture();
 	}
 
+	public boolean needsCapture() {
+		return visual.needsCapture();
+	}
+
+	public void beginFrame() {
+		visual.beginFrame();
+	}
+
+	public void beginFrame(FrameBuffer destination) {
+		visual.beginFrame(destination);
+	}
+
+	public void endFrame() {
+		visual.endFrame();
+	}
+
 }
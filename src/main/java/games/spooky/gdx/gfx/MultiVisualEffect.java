@@ -27,19 +27,57 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import games.spooky.gdx.gfx.shader.FusedShaderEffect;
+import games.spooky.gdx.gfx.shader.PointwiseShaderEffect;
 
 /**
  * A convenience class to chain multiple VisualEffects. Uses a BouncingBuffer
- * for this purpose.
+ * for this purpose, only allocated when actually needed. Adjacent
+ * PointwiseShaderEffects are fused into a single rendering pass, unless
+ * fusion is disabled. Effects currently being identities are skipped.
+ * <p>
+ * Optionally, colors are dithered before being written to lower precision
+ * targets, see {@link #setDithering(Dithering)}, and scene is captured
+ * multisampled, see {@link #setSamples(int)}.
  */
-public final class MultiVisualEffect implements VisualEffect, Disposable {
+public final class MultiVisualEffect implements IdentityAwareEffect, Disposable {
 
 	private final BouncingBuffer buffer;
 	private final Array<VisualEffect> effects = new Array<VisualEffect>();
 
-	private Copy copy = null;
+	// Effects actually rendered, after fusion
+	private final Array<VisualEffect> plan = new Array<VisualEffect>();
+	private final Array<FusedShaderEffect> fusedEffects = new Array<FusedShaderEffect>();
+	private final Array<PointwiseShaderEffect> run = new Array<PointwiseShaderEffect>();
+
+	private boolean fusion = true;
+
+	// Count of FusedShaderEffects kept for reuse, least recently used ones being disposed
+	private int fusedCacheSize = 8;
+
+	// Count of identity effects skipped by last plan
+	private int skipped = 0;
+
+	private CopyService copyService = null;
+
+	// Multisampled capture, resolved into inner buffer
+	private int samples = 0;
+	private MultisampleFrameBuffer multisampleBuffer = null;
+	private boolean multisampleCapture = false;
+
+	private Dithering dithering = Dithering.None;
+	private Dither outputDither = null;
+	private Dither intermediateDither = null;
+
+	// Frame in progress, see beginFrame()
+	private boolean inFrame = false;
+	private boolean capturing = false;
+	private FrameBuffer frameDestination = null;
 
 	public MultiVisualEffect(Format format, boolean useDepth) {
 		this(format, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), useDepth);
@@ -53,16 +91,134 @@ public final class MultiVisualEffect implements VisualEffect, Disposable {
 		return buffer;
 	}
 
+	/**
+	 * Resizes inner BouncingBuffer. See
+	 * {@link BouncingBuffer#resize(int, int)}. Empty sizes are ignored.
+	 *
+	 * @param width
+	 *            the new width
+	 * @param height
+	 *            the new height
+	 */
+	public void resize(int width, int height) {
+		if (width <= 0 || height <= 0)
+			return;
+
+		buffer.resize(width, height);
+		if (multisampleBuffer != null && (multisampleBuffer.getWidth() != width
+				|| multisampleBuffer.getHeight() != height)) {
+			multisampleBuffer.dispose();
+			multisampleBuffer = null;
+		}
+	}
+
 	public void addEffect(VisualEffect effect) {
 		effects.add(effect);
 	}
 
 	public void removeEffect(VisualEffect effect) {
 		effects.removeValue(effect, true);
+
+		for (int i = fusedEffects.size - 1; i >= 0; i--) {
+			FusedShaderEffect fused = fusedEffects.get(i);
+			if (fused.contains(effect)) {
+				fusedEffects.removeIndex(i);
+				fused.dispose();
+			}
+		}
 	}
 
 	public void clearEffects() {
 		effects.clear();
+		disposeFusedEffects();
+	}
+
+	public boolean isFusion() {
+		return fusion;
+	}
+
+	/**
+	 * Sets whether adjacent PointwiseShaderEffects are fused into a single
+	 * rendering pass. Enabled by default.
+	 *
+	 * @param fusion
+	 *            true to fuse pointwise effects, false to render them one by
+	 *            one
+	 */
+	public void setFusion(boolean fusion) {
+		this.fusion = fusion;
+		if (!fusion)
+			disposeFusedEffects();
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Sets the count of samples per pixel scene is captured with. Multisampled
+	 * capture is resolved into the inner buffer with a single blit before
+	 * effects are applied. Only available with OpenGL (ES) 3.0, capture is
+	 * not multisampled otherwise.
+	 *
+	 * @param samples
+	 *            the count of samples, 0 to disable multisampling
+	 */
+	public void setSamples(int samples) {
+		this.samples = samples;
+		if (multisampleBuffer != null && multisampleBuffer.getSamples() != Math.min(samples,
+				MultisampleFrameBuffer.getMaxSamples())) {
+			multisampleBuffer.dispose();
+			multisampleBuffer = null;
+		}
+	}
+
+	/**
+	 * Tells whether scene is actually captured multisampled.
+	 *
+	 * @return true if capture is multisampled, false otherwise
+	 */
+	public boolean isMultisampled() {
+		return samples > 1 && MultisampleFrameBuffer.isAvailable();
+	}
+
+	public Dithering getDithering() {
+		return dithering;
+	}
+
+	/**
+	 * Sets whether and where colors are dithered. Dithering is fused into the
+	 * pointwise effects writing to the dithered target, or rendered as an
+	 * additional pass otherwise. Disabled by default.
+	 *
+	 * @param dithering
+	 *            the dithering mode
+	 */
+	public void setDithering(Dithering dithering) {
+		this.dithering = dithering;
+		if (dithering != Dithering.None && outputDither == null)
+			outputDither = new Dither();
+		if (dithering == Dithering.All && intermediateDither == null) {
+			intermediateDither = new Dither();
+			intermediateDither.setFormat(buffer.getFormat());
+		}
+	}
+
+	public int getFusedCacheSize() {
+		return fusedCacheSize;
+	}
+
+	/**
+	 * Sets how many fused effects (each with its own ShaderProgram) are kept
+	 * for reuse. Least recently used fused effects are disposed beyond this
+	 * count. Defaults to 8.
+	 *
+	 * @param fusedCacheSize
+	 *            the count of fused effects to keep, at least 1
+	 */
+	public void setFusedCacheSize(int fusedCacheSize) {
+		this.fusedCacheSize = Math.max(1, fusedCacheSize);
+		trimFusedEffects(fusedEffects.size);
 	}
 
 	public boolean hasEffects() {
@@ -75,13 +231,28 @@ public final class MultiVisualEffect implements VisualEffect, Disposable {
 
 		for (VisualEffect e : effects)
 			e.rebind();
+
+		for (FusedShaderEffect e : fusedEffects)
+			e.rebind();
+
+		if (copyService != null)
+			copyService.rebind();
+		if (outputDither != null)
+			outputDither.rebind();
+		if (intermediateDither != null)
+			intermediateDither.rebind();
 	}
 
 	/**
-	 * Begins capture of inner BoundingBuffer.
+	 * Begins capture of inner BoundingBuffer, through a multisampled
+	 * FrameBuffer if enabled.
 	 */
 	public void capture() {
-		buffer.begin();
+		multisampleCapture = isMultisampled();
+		if (multisampleCapture)
+			FrameBufferStack.push(obtainMultisampleBuffer());
+		else
+			buffer.begin();
 	}
 
 	/**
@@ -90,41 +261,306 @@ public final class MultiVisualEffect implements VisualEffect, Disposable {
 	 * @return the texture generated from the capture
 	 */
 	public Texture endCapture() {
-		buffer.end();
+		if (multisampleCapture) {
+			Rectangle viewport = buffer.getViewport();
+			if (viewport == null)
+				FrameBufferStack.pop();
+			else
+				FrameBufferStack.pop((int) viewport.x, (int) viewport.y, (int) viewport.width, (int) viewport.height);
+			// Resolving bounces inner buffer just as a capture would
+			multisampleBuffer.resolve(buffer.getCurrentBuffer());
+			multisampleCapture = false;
+		} else {
+			buffer.end();
+		}
 		return buffer.getResultTexture();
 	}
 
+	/**
+	 * Tells whether rendering through this effect currently needs a capture,
+	 * that is whether there is any effect to apply which is not an identity.
+	 *
+	 * @return true if capture is needed, false if the scene may be drawn
+	 *         straight to the destination
+	 */
+	public boolean needsCapture() {
+		return !isIdentity();
+	}
+
+	/**
+	 * Tells whether this effect currently leaves its source unchanged, that is
+	 * whether every effect it combines is an identity. Effects are only
+	 * queried: nothing gets fused.
+	 */
+	@Override
+	public boolean isIdentity() {
+		for (int i = 0; i < effects.size; i++) {
+			VisualEffect effect = effects.get(i);
+			if (!(effect instanceof IdentityAwareEffect) || !((IdentityAwareEffect) effect).isIdentity())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the count of identity effects skipped by the last rendering.
+	 *
+	 * @return the count of passes skipped
+	 */
+	public int getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * Begins a frame to be rendered to the backbuffer. See
+	 * {@link #beginFrame(FrameBuffer)}.
+	 */
+	public void beginFrame() {
+		beginFrame(null);
+	}
+
+	/**
+	 * Begins a frame to be rendered to given destination. If there is any
+	 * effect to apply, scene drawn until {@link #endFrame()} is captured then
+	 * rendered through effects. Otherwise scene is drawn straight to the
+	 * destination, sparing both an offscreen render and a copy.
+	 * <p>
+	 * The decision is taken here, once per frame: effects added or removed
+	 * before endFrame() are accounted for from next frame on.
+	 *
+	 * @param destination
+	 *            the FrameBuffer to eventually write to, null for the
+	 *            backbuffer
+	 */
+	public void beginFrame(FrameBuffer destination) {
+		if (inFrame)
+			throw new GdxRuntimeException("Frame already begun, call endFrame() first");
+		inFrame = true;
+		frameDestination = destination;
+		capturing = needsCapture();
+		if (capturing)
+			capture();
+		else if (destination != null)
+			FrameBufferStack.begin(destination);
+	}
+
+	/**
+	 * Ends a frame begun with {@link #beginFrame(FrameBuffer)}, applying
+	 * effects if scene was captured.
+	 */
+	public void endFrame() {
+		if (!inFrame)
+			throw new GdxRuntimeException("No frame begun, call beginFrame() first");
+		if (capturing) {
+			// Go straight from capture to first pass
+			FrameBufferStack.beginBatch();
+			render(endCapture(), frameDestination);
+			FrameBufferStack.endBatch();
+		} else if (frameDestination != null)
+			FrameBufferStack.end(frameDestination);
+		inFrame = false;
+		capturing = false;
+		frameDestination = null;
+	}
+
+	/**
+	 * Gets the CopyService used when there is no effect to apply.
+	 *
+	 * @return the CopyService of this effect
+	 */
+	public CopyService getCopyService() {
+		if (copyService == null)
+			copyService = new CopyService();
+		return copyService;
+	}
+
 	public void render(FrameBuffer source, FrameBuffer destination) {
-		render(source.getColorBufferTexture(), destination);
+		render(source.getColorBufferTexture(), source, destination);
 	}
 
 	@Override
 	public void render(Texture source, FrameBuffer destination) {
+		render(source, buffer.findBuffer(source), destination);
+	}
+
+	/**
+	 * Renders given source through effects, knowing the FrameBuffer it comes
+	 * from, if any, so that it may be blitted when there is no effect.
+	 */
+	private void render(Texture source, FrameBuffer sourceBuffer, FrameBuffer destination) {
+		if (outputDither != null) {
+			if (destination == null)
+				outputDither.setFormat(Gdx.graphics.getBufferFormat());
+			else
+				outputDither.setFormat(buffer.getFormat());
+		}
+
+		Array<VisualEffect> passes = plan();
 
-		switch (effects.size) {
+		GLState.beginScope();
+		FrameBufferStack.beginBatch();
+
+		switch (passes.size) {
 		case 0:
-			// No effect: make some simple copy
-			if (copy == null)
-				copy = new Copy();
-			copy.render(source, destination);
+			// No effect: make some simple copy, blitting if possible, to the viewport as effects would
+			Rectangle viewport = buffer.getViewport();
+			if (sourceBuffer == null)
+				getCopyService().copy(source, destination);
+			else if (destination == null && viewport != null)
+				getCopyService().copy(sourceBuffer, null, (int) viewport.x, (int) viewport.y, (int) viewport.width,
+						(int) viewport.height);
+			else
+				getCopyService().copy(sourceBuffer, destination);
 			break;
 		case 1:
-			effects.first().render(source, destination);
+			renderPass(passes.first(), source, destination);
 			break;
 		default:
-			effects.first().render(source, buffer.getCurrentBuffer());
-			for (int i = 1; i < effects.size - 1; i++)
-				effects.get(i).render(buffer.getResultTexture(), buffer.getCurrentBuffer());
-			effects.peek().render(buffer.getResultTexture(), destination);
+			renderPass(passes.first(), source, buffer.getCurrentBuffer());
+			for (int i = 1; i < passes.size - 1; i++)
+				renderPass(passes.get(i), buffer.getResultTexture(), buffer.getCurrentBuffer());
+			renderPass(passes.peek(), buffer.getResultTexture(), destination);
 			break;
 		}
+
+		FrameBufferStack.endBatch();
+		GLState.endScope();
+		buffer.trim();
 	}
 
 	@Override
 	public void dispose() {
 		buffer.dispose();
-		if (copy != null)
-			copy.dispose();
+		if (copyService != null)
+			copyService.dispose();
+		if (multisampleBuffer != null)
+			multisampleBuffer.dispose();
+		disposeFusedEffects();
+		if (outputDither != null)
+			outputDither.dispose();
+		if (intermediateDither != null)
+			intermediateDither.dispose();
+	}
+
+	private static void renderPass(VisualEffect effect, Texture source, FrameBuffer destination) {
+		effect.render(source, destination);
+
+		// Effects we don't know of may have changed GL state behind our back
+		if (!GLState.isTracked(effect))
+			GLState.invalidate();
+	}
+
+	/**
+	 * Computes the effects to render this frame, skipping identities then
+	 * fusing adjacent pointwise effects if enabled, along with dithering. As
+	 * it fuses effects and may dispose least recently used fused ones, it is
+	 * only called once per rendering.
+	 *
+	 * @return the effects to render
+	 */
+	private Array<VisualEffect> plan() {
+		plan.clear();
+		run.clear();
+		skipped = 0;
+		boolean lowPrecision = isLowPrecision(buffer.getFormat());
+		for (int i = 0; i < effects.size; i++) {
+			VisualEffect effect = effects.get(i);
+			if (effect instanceof IdentityAwareEffect && ((IdentityAwareEffect) effect).isIdentity()) {
+				skipped++;
+			} else if (fusion && effect instanceof PointwiseShaderEffect) {
+				run.add((PointwiseShaderEffect) effect);
+			} else {
+				// Run is about to be written to the buffer
+				if (dithering == Dithering.All && lowPrecision && run.size > 0)
+					run.add(intermediateDither);
+				flushRun();
+				plan.add(effect);
+			}
+		}
+		if (dithering != Dithering.None) {
+			if (run.size > 0) {
+				run.add(outputDither);
+			} else if (plan.size > 0 && !lowPrecision) {
+				// Once written to a low precision buffer, it is too late to dither
+				plan.add(outputDither);
+			}
+		}
+		flushRun();
+		return plan;
+	}
+
+	private MultisampleFrameBuffer obtainMultisampleBuffer() {
+		if (multisampleBuffer == null)
+			multisampleBuffer = new MultisampleFrameBuffer(buffer.getFormat(), buffer.getWidth(), buffer.getHeight(),
+					buffer.hasDepth(), samples);
+		return multisampleBuffer;
+	}
+
+	private static boolean isLowPrecision(Format format) {
+		return format == Format.RGB565 || format == Format.RGBA4444;
+	}
+
+	private void flushRun() {
+		if (run.size == 1)
+			plan.add(run.first());
+		else if (run.size > 1)
+			plan.add(fuse(run));
+		run.clear();
+	}
+
+	private FusedShaderEffect fuse(Array<PointwiseShaderEffect> run) {
+		// Most recently used fused effects are kept last
+		for (int i = 0; i < fusedEffects.size; i++) {
+			FusedShaderEffect fused = fusedEffects.get(i);
+			if (fused.fuses(run)) {
+				fusedEffects.removeIndex(i);
+				fusedEffects.add(fused);
+				return fused;
+			}
+		}
+		FusedShaderEffect fused = new FusedShaderEffect(run);
+		fusedEffects.add(fused);
+		trimFusedEffects(fusedEffects.size - 1);
+		return fused;
+	}
+
+	/**
+	 * Disposes least recently used fused effects beyond cache size, among the
+	 * first given count, sparing the ones of the plan being rendered.
+	 */
+	private void trimFusedEffects(int count) {
+		int i = 0;
+		while (fusedEffects.size > fusedCacheSize && i < count) {
+			FusedShaderEffect fused = fusedEffects.get(i);
+			if (plan.contains(fused, true)) {
+				i++;
+			} else {
+				fusedEffects.removeIndex(i);
+				fused.dispose();
+				count--;
+			}
+		}
+	}
+
+	private void disposeFusedEffects() {
+		for (FusedShaderEffect fused : fusedEffects)
+			fused.dispose();
+		fusedEffects.clear();
+	}
+
+	/**
+	 * Where MultiVisualEffect dithers colors.
+	 */
+	public enum Dithering {
+		/** No dithering. */
+		None,
+		/** Dithering of the final pass, written to the destination. */
+		Output,
+		/**
+		 * Dithering of the final pass and of pointwise passes written to a 16
+		 * bits inner buffer. Requires fusion.
+		 */
+		All
 	}
 
 }
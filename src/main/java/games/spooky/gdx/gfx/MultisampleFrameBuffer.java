@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.GLOnlyTextureData;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * A FrameBuffer rendering to multisampled renderbuffers, to be resolved into
+ * a regular FrameBuffer with a single blit. Requires OpenGL (ES) 3.0.
+ * <p>
+ * Its color texture is a 1x1 placeholder: contents are only available
+ * through {@link #resolve(FrameBuffer)}.
+ */
+public class MultisampleFrameBuffer extends FrameBuffer {
+
+	private static int maxSamples = -1;
+
+	private final int samples;
+	private final boolean multisampleDepth;
+
+	private int colorHandle = 0;
+	private int depthHandle = 0;
+
+	// Context generation renderbuffers were last created in
+	private int generation;
+
+	/**
+	 * Instantiates a new MultisampleFrameBuffer.
+	 *
+	 * @param format
+	 *            the format of the color buffer
+	 * @param width
+	 *            the width of the FrameBuffer
+	 * @param height
+	 *            the height of the FrameBuffer
+	 * @param hasDepth
+	 *            whether to attach a (multisampled) depth buffer
+	 * @param samples
+	 *            the count of samples per pixel, clamped to what is supported
+	 */
+	public MultisampleFrameBuffer(Format format, int width, int height, boolean hasDepth, int samples) {
+		super(format, width, height, false);
+		if (!isAvailable())
+			throw new GdxRuntimeException("Multisampled FrameBuffers require OpenGL (ES) 3.0");
+		this.samples = Math.min(samples, getMaxSamples());
+		this.multisampleDepth = hasDepth;
+		attachRenderbuffers();
+	}
+
+	/**
+	 * Tells whether multisampled FrameBuffers may be created in current
+	 * context.
+	 *
+	 * @return true if available, false otherwise
+	 */
+	public static boolean isAvailable() {
+		return Gdx.gl30 != null;
+	}
+
+	/**
+	 * Gets the maximum count of samples per pixel supported.
+	 *
+	 * @return the maximum count of samples, 0 if multisampling is unavailable
+	 */
+	public static int getMaxSamples() {
+		if (maxSamples < 0) {
+			if (isAvailable()) {
+				IntBuffer result = BufferUtils.newIntBuffer(16);
+				Gdx.gl.glGetIntegerv(GL30.GL_MAX_SAMPLES, result);
+				maxSamples = result.get(0);
+			} else {
+				maxSamples = 0;
+			}
+		}
+		return maxSamples;
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void bind() {
+		// libGDX rebuilds the FrameBuffer itself after context loss, without renderbuffers
+		if (generation != ContextRecovery.getGeneration()) {
+			long start = TimeUtils.nanoTime();
+			attachRenderbuffers();
+			ContextRecovery.reportRecovery(start);
+		}
+		super.bind();
+	}
+
+	/**
+	 * Resolves samples into given FrameBuffer, with a single blit. Both must
+	 * have the same size, or at least destination must be larger.
+	 *
+	 * @param destination
+	 *            the FrameBuffer to resolve into
+	 */
+	public void resolve(FrameBuffer destination) {
+		FrameBufferStack.begin(destination);
+		// Blits are subject to scissor test and color mask
+		GLState.setScissorTest(false);
+		GLState.setColorMask(true, true, true, true);
+		Gdx.gl30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, getFramebufferHandle());
+		Gdx.gl30.glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GL20.GL_COLOR_BUFFER_BIT,
+				GL20.GL_NEAREST);
+		// Bring read binding back in line with FrameBufferStack
+		FrameBufferStack.rebind();
+		FrameBufferStack.end(destination);
+	}
+
+	@Override
+	public void dispose() {
+		if (generation == ContextRecovery.getGeneration())
+			deleteRenderbuffers();
+		super.dispose();
+	}
+
+	@Override
+	protected Texture createColorTexture() {
+		// Placeholder only, color is rendered to a multisampled renderbuffer
+		int glFormat = Pixmap.Format.toGlFormat(format);
+		int glType = Pixmap.Format.toGlType(format);
+		return new Texture(new GLOnlyTextureData(1, 1, 0, glFormat, glFormat, glType));
+	}
+
+	private void attachRenderbuffers() {
+		// Renderbuffers of a lost context are gone already
+		if (generation == ContextRecovery.getGeneration())
+			deleteRenderbuffers();
+		generation = ContextRecovery.getGeneration();
+
+		GL30 gl = Gdx.gl30;
+		super.bind();
+
+		colorHandle = gl.glGenRenderbuffer();
+		gl.glBindRenderbuffer(GL20.GL_RENDERBUFFER, colorHandle);
+		gl.glRenderbufferStorageMultisample(GL20.GL_RENDERBUFFER, samples, internalFormat(format), width, height);
+		gl.glFramebufferRenderbuffer(GL20.GL_FRAMEBUFFER, GL20.GL_COLOR_ATTACHMENT0, GL20.GL_RENDERBUFFER,
+				colorHandle);
+
+		if (multisampleDepth) {
+			depthHandle = gl.glGenRenderbuffer();
+			gl.glBindRenderbuffer(GL20.GL_RENDERBUFFER, depthHandle);
+			gl.glRenderbufferStorageMultisample(GL20.GL_RENDERBUFFER, samples, GL30.GL_DEPTH24_STENCIL8, width,
+					height);
+			gl.glFramebufferRenderbuffer(GL20.GL_FRAMEBUFFER, GL30.GL_DEPTH_STENCIL_ATTACHMENT, GL20.GL_RENDERBUFFER,
+					depthHandle);
+		}
+
+		gl.glBindRenderbuffer(GL20.GL_RENDERBUFFER, 0);
+
+		int status = gl.glCheckFramebufferStatus(GL20.GL_FRAMEBUFFER);
+		FrameBufferStack.rebind();
+		// Placeholder texture was bound behind GLState's back when built
+		GLState.invalidateTextures();
+		if (status != GL20.GL_FRAMEBUFFER_COMPLETE)
+			throw new GdxRuntimeException("Multisampled frame buffer incomplete: " + status);
+	}
+
+	private void deleteRenderbuffers() {
+		if (colorHandle != 0)
+			Gdx.gl.glDeleteRenderbuffer(colorHandle);
+		if (depthHandle != 0)
+			Gdx.gl.glDeleteRenderbuffer(depthHandle);
+		colorHandle = 0;
+		depthHandle = 0;
+	}
+
+	private static int internalFormat(Format format) {
+		switch (format) {
+		case RGB565:
+			return GL20.GL_RGB565;
+		case RGBA4444:
+			return GL20.GL_RGBA4;
+		case RGB888:
+			return GL30.GL_RGB8;
+		default:
+			return GL30.GL_RGBA8;
+		}
+	}
+}
@@ -38,6 +38,8 @@ public class NamedBufferPool implements Disposable {
 	private final FrameBufferFactory factory;
 	private final ObjectMap<String, FrameBuffer> frameBuffers = new ObjectMap<String, FrameBuffer>();
 
+	private CopyService copyService = null;
+
 	public NamedBufferPool() {
 		this(new FrameBufferFactory());
 	}
@@ -115,6 +117,52 @@ public class NamedBufferPool implements Disposable {
 		return buffer;
 	}
 
+	/**
+	 * Copies the FrameBuffer indexed by a name into the one indexed by
+	 * another, stretched to cover it. Either is created by this pool's
+	 * FrameBufferFactory if missing. Copy is made by the CopyService, blitting
+	 * if possible.
+	 * 
+	 * @param source
+	 *            the name of the FrameBuffer to copy
+	 * @param destination
+	 *            the name of the FrameBuffer to copy to
+	 * @return the FrameBuffer copied to
+	 */
+	public FrameBuffer copy(String source, String destination) {
+		FrameBuffer buffer = get(destination);
+		getCopyService().copy(get(source), buffer);
+		return buffer;
+	}
+
+	/**
+	 * Copies given texture into the FrameBuffer indexed by given name,
+	 * stretched to cover it. The FrameBuffer is created by this pool's
+	 * FrameBufferFactory if missing.
+	 * 
+	 * @param source
+	 *            the texture to copy
+	 * @param destination
+	 *            the name of the FrameBuffer to copy to
+	 * @return the FrameBuffer copied to
+	 */
+	public FrameBuffer copy(Texture source, String destination) {
+		FrameBuffer buffer = get(destination);
+		getCopyService().copy(source, buffer);
+		return buffer;
+	}
+
+	/**
+	 * Gets the CopyService used by copy methods.
+	 * 
+	 * @return the CopyService of this pool
+	 */
+	public CopyService getCopyService() {
+		if (copyService == null)
+			copyService = new CopyService();
+		return copyService;
+	}
+
 	/**
 	 * Releases the FrameBuffer indexed by given name. It will be removed from
 	 * this pool then disposed.
@@ -133,6 +181,10 @@ public class NamedBufferPool implements Disposable {
 		for (FrameBuffer fb : frameBuffers.values())
 			fb.dispose();
 		frameBuffers.clear();
+		if (copyService != null) {
+			copyService.dispose();
+			copyService = null;
+		}
 	}
 
 	public interface Drawer {
@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.Application.ApplicationType;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.GLOnlyTextureData;
+
+/**
+ * Color formats FrameBuffers may be created with, beyond the ones of
+ * Pixmap.Format: single and dual-channel targets for masks, floating-point
+ * targets for HDR. Whether a format may actually be rendered to is probed
+ * once, on first use; unsupported formats fall back to the closest supported
+ * one.
+ */
+public enum RenderFormat {
+
+	RGBA8888(Format.RGBA8888, 0, 0, 0, 4, null),
+	RGB888(Format.RGB888, 0, 0, 0, 4, RGBA8888),
+	RGBA4444(Format.RGBA4444, 0, 0, 0, 2, RGBA8888),
+	RGB565(Format.RGB565, 0, 0, 0, 2, RGB888),
+
+	/** Two 8-bit channels, read as red and green. */
+	RG8(null, GL30.GL_RG8, GL30.GL_RG, GL20.GL_UNSIGNED_BYTE, 2, RGBA8888),
+	/** A single 8-bit channel, read as red. */
+	R8(null, GL30.GL_R8, GL30.GL_RED, GL20.GL_UNSIGNED_BYTE, 1, RG8),
+
+	/** Four 16-bit floating-point channels. */
+	RGBA16F(null, GL30.GL_RGBA16F, GL20.GL_RGBA, GL30.GL_HALF_FLOAT, 8, RGBA8888),
+	/** Three packed floating-point channels, no alpha. */
+	R11G11B10F(null, GL30.GL_R11F_G11F_B10F, GL20.GL_RGB, GL30.GL_UNSIGNED_INT_10F_11F_11F_REV, 4, RGBA16F);
+
+	// From OES_texture_half_float, for OpenGL ES 2.0
+	private static final int GL_HALF_FLOAT_OES = 0x8D61;
+
+	/** The equivalent Pixmap.Format, null if none. */
+	public final Format pixmapFormat;
+
+	public final int bytesPerPixel;
+
+	private final int internalFormat;
+	private final int format;
+	private final int type;
+
+	private final RenderFormat fallback;
+
+	// Probing result, null until probed
+	private Boolean supported = null;
+
+	RenderFormat(Format pixmapFormat, int internalFormat, int format, int type, int bytesPerPixel,
+			RenderFormat fallback) {
+		this.pixmapFormat = pixmapFormat;
+		this.internalFormat = internalFormat;
+		this.format = format;
+		this.type = type;
+		this.bytesPerPixel = bytesPerPixel;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Tells whether FrameBuffers of this format may be created in current
+	 * context. Probed on first call, then cached.
+	 *
+	 * @return true if this format is supported, false otherwise
+	 */
+	public boolean isSupported() {
+		if (supported == null)
+			supported = probe();
+		return supported;
+	}
+
+	/**
+	 * Gets this format if supported, otherwise the first supported format of
+	 * its fallback chain. RGBA8888 is always supported.
+	 *
+	 * @return the closest supported format
+	 */
+	public RenderFormat resolve() {
+		RenderFormat format = this;
+		while (format.fallback != null && !format.isSupported())
+			format = format.fallback;
+		return format;
+	}
+
+	/**
+	 * Tells whether this format stores floating-point values. Blits between
+	 * floating-point and fixed-point formats are not allowed.
+	 *
+	 * @return true if this format is floating-point, false otherwise
+	 */
+	public boolean isFloatingPoint() {
+		return type == GL30.GL_HALF_FLOAT || type == GL30.GL_UNSIGNED_INT_10F_11F_11F_REV;
+	}
+
+	/**
+	 * Gets the RenderFormat given FrameBuffer was actually created with, if it
+	 * is not a Pixmap.Format one.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer to get the format of
+	 * @return the RenderFormat of the FrameBuffer, null if it was created
+	 *         with a Pixmap.Format
+	 */
+	static RenderFormat of(FrameBuffer buffer) {
+		if (buffer instanceof RenderFormatFrameBuffer)
+			return ((RenderFormatFrameBuffer) buffer).renderFormat;
+		return null;
+	}
+
+	/**
+	 * Probes all formats at once, typically at startup, so that no probing
+	 * happens later on.
+	 */
+	public static void probeAll() {
+		for (RenderFormat format : values())
+			format.isSupported();
+	}
+
+	/**
+	 * Creates a FrameBuffer of this format, or of the closest supported
+	 * format.
+	 *
+	 * @param width
+	 *            the width of the FrameBuffer
+	 * @param height
+	 *            the height of the FrameBuffer
+	 * @param hasDepth
+	 *            whether to attach a depth buffer
+	 * @return the new FrameBuffer
+	 */
+	public FrameBuffer createFrameBuffer(int width, int height, boolean hasDepth) {
+		RenderFormat format = resolve();
+		FrameBuffer buffer = format.pixmapFormat != null ? new FrameBuffer(format.pixmapFormat, width, height, hasDepth)
+				: RenderFormatFrameBuffer.create(format, width, height, hasDepth);
+		// Building bound its texture and the default FrameBuffer behind our back
+		GLState.invalidateTextures();
+		FrameBufferStack.invalidate();
+		return buffer;
+	}
+
+	private boolean probe() {
+		if (pixmapFormat != null)
+			return true;
+
+		if (!isAllowed())
+			return false;
+
+		// Make sure it is actually color-renderable
+		try {
+			RenderFormatFrameBuffer.create(this, 4, 4, false).dispose();
+			return true;
+		} catch (Exception e) {
+			return false;
+		} finally {
+			GLState.invalidate();
+			FrameBufferStack.invalidate();
+		}
+	}
+
+	private boolean isAllowed() {
+		boolean gl30 = Gdx.graphics.isGL30Available();
+		boolean desktop = Gdx.app.getType() == ApplicationType.Desktop;
+		switch (this) {
+		case R8:
+		case RG8:
+			return gl30 || Gdx.graphics.supportsExtension("GL_EXT_texture_rg")
+					|| Gdx.graphics.supportsExtension("GL_ARB_texture_rg");
+		case RGBA16F:
+			if (gl30)
+				return desktop || Gdx.graphics.supportsExtension("GL_EXT_color_buffer_float")
+						|| Gdx.graphics.supportsExtension("GL_EXT_color_buffer_half_float");
+			return Gdx.graphics.supportsExtension("GL_ARB_texture_float")
+					|| (Gdx.graphics.supportsExtension("GL_OES_texture_half_float")
+							&& Gdx.graphics.supportsExtension("GL_EXT_color_buffer_half_float"));
+		case R11G11B10F:
+			if (gl30)
+				return desktop || Gdx.graphics.supportsExtension("GL_EXT_color_buffer_float");
+			return Gdx.graphics.supportsExtension("GL_EXT_packed_float");
+		default:
+			return true;
+		}
+	}
+
+	private GLOnlyTextureData createTextureData(int width, int height) {
+		// OpenGL ES 2.0 knows unsized formats and its own half float type only
+		if (Gdx.app.getType() != ApplicationType.Desktop && !Gdx.graphics.isGL30Available()) {
+			int type = this.type == GL30.GL_HALF_FLOAT ? GL_HALF_FLOAT_OES : this.type;
+			return new GLOnlyTextureData(width, height, 0, format, format, type);
+		}
+		return new GLOnlyTextureData(width, height, 0, internalFormat, format, type);
+	}
+
+	/**
+	 * A FrameBuffer whose color texture is of a RenderFormat not known of
+	 * Pixmap.Format.
+	 */
+	private static class RenderFormatFrameBuffer extends FrameBuffer {
+
+		// Format of the FrameBuffer being constructed, as texture is created from super constructor
+		private static RenderFormat creating = null;
+
+		private RenderFormat renderFormat;
+
+		static synchronized RenderFormatFrameBuffer create(RenderFormat format, int width, int height,
+				boolean hasDepth) {
+			creating = format;
+			try {
+				RenderFormatFrameBuffer buffer = new RenderFormatFrameBuffer(width, height, hasDepth);
+				buffer.renderFormat = format;
+				return buffer;
+			} finally {
+				creating = null;
+			}
+		}
+
+		private RenderFormatFrameBuffer(int width, int height, boolean hasDepth) {
+			super(Pixmap.Format.RGBA8888, width, height, hasDepth);
+		}
+
+		@Override
+		protected Texture createColorTexture() {
+			RenderFormat format = renderFormat != null ? renderFormat : creating;
+			Texture result = new Texture(format.createTextureData(width, height));
+			result.setFilter(TextureFilter.Linear, TextureFilter.Linear);
+			result.setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+			return result;
+		}
+	}
+}
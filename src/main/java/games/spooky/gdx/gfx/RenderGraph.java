@@ -0,0 +1,411 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A VisualEffect made of several nodes, rendered in order of addition. Each
+ * node reads from the source Texture and/or from transient Targets written by
+ * previous nodes, then writes to its own Target or to the destination.
+ * <p>
+ * Targets are only given a FrameBuffer from the first node writing them to
+ * the last node reading them, so that Targets whose lifetimes do not overlap
+ * share the same FrameBuffer. FrameBuffers are leased from a
+ * TransientBufferPool, which may be shared among several graphs.
+ */
+public class RenderGraph implements VisualEffect, Disposable {
+
+	private final Array<Target> targets = new Array<Target>();
+	private final Array<Node> nodes = new Array<Node>();
+
+	private final TransientBufferPool pool;
+	private final boolean ownsPool;
+
+	private boolean compiled = false;
+
+	private Texture source;
+	private FrameBuffer destination;
+
+	/**
+	 * Instantiates a new RenderGraph with its own TransientBufferPool.
+	 */
+	public RenderGraph() {
+		this(new TransientBufferPool(), true);
+	}
+
+	/**
+	 * Instantiates a new RenderGraph leasing its FrameBuffers from given pool.
+	 * The pool is NOT owned by the graph: it is up to you to call endFrame()
+	 * and dispose() on it.
+	 *
+	 * @param pool
+	 *            the TransientBufferPool to lease FrameBuffers from
+	 */
+	public RenderGraph(TransientBufferPool pool) {
+		this(pool, false);
+	}
+
+	private RenderGraph(TransientBufferPool pool, boolean ownsPool) {
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+	}
+
+	/**
+	 * Gets the TransientBufferPool this graph leases FrameBuffers from.
+	 *
+	 * @return the TransientBufferPool
+	 */
+	public TransientBufferPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Creates a new transient Target, to be written and read by this graph's
+	 * nodes.
+	 *
+	 * @param format
+	 *            the format of the color buffer
+	 * @param width
+	 *            the width of the Target
+	 * @param height
+	 *            the height of the Target
+	 * @param hasDepth
+	 *            whether to attach a depth buffer
+	 * @return the newly created Target
+	 */
+	public Target createTarget(Format format, int width, int height, boolean hasDepth) {
+		Target target = new Target(format, null, width, height, hasDepth);
+		targets.add(target);
+		compiled = false;
+		return target;
+	}
+
+	/**
+	 * Creates a new transient Target of given RenderFormat, such as a
+	 * single-channel mask, to be written and read by this graph's nodes.
+	 * Unsupported formats fall back to the closest supported one.
+	 *
+	 * @param format
+	 *            the format of the color buffer
+	 * @param width
+	 *            the width of the Target
+	 * @param height
+	 *            the height of the Target
+	 * @param hasDepth
+	 *            whether to attach a depth buffer
+	 * @return the newly created Target
+	 */
+	public Target createTarget(RenderFormat format, int width, int height, boolean hasDepth) {
+		Target target = new Target(null, format, width, height, hasDepth);
+		targets.add(target);
+		compiled = false;
+		return target;
+	}
+
+	/**
+	 * Adds a node to this graph. Nodes are rendered in order of addition.
+	 *
+	 * @param node
+	 *            the node to add
+	 * @return the node added
+	 */
+	public <T extends Node> T addNode(T node) {
+		nodes.add(node);
+		compiled = false;
+		return node;
+	}
+
+	/**
+	 * Gets the source Texture being rendered. Only valid during rendering.
+	 *
+	 * @return the source Texture
+	 */
+	public Texture getSource() {
+		return source;
+	}
+
+	/**
+	 * Gets the destination FrameBuffer being rendered to. Only valid during
+	 * rendering.
+	 *
+	 * @return the destination FrameBuffer, null for the backbuffer
+	 */
+	public FrameBuffer getDestination() {
+		return destination;
+	}
+
+	/**
+	 * Gets the FrameBuffer currently backing given Target.
+	 *
+	 * @param target
+	 *            the Target
+	 * @return the FrameBuffer of given Target
+	 */
+	public FrameBuffer getBuffer(Target target) {
+		if (target.buffer == null)
+			throw new GdxRuntimeException("Target is not alive at this point of the graph");
+		return target.buffer;
+	}
+
+	/**
+	 * Gets the color Texture currently backing given Target.
+	 *
+	 * @param target
+	 *            the Target
+	 * @return the color buffer Texture of given Target
+	 */
+	public Texture getTexture(Target target) {
+		return getBuffer(target).getColorBufferTexture();
+	}
+
+	/**
+	 * Computes the lifetime of each Target. Called automatically upon
+	 * rendering whenever the graph has changed.
+	 */
+	public void compile() {
+		for (Target target : targets) {
+			target.first = -1;
+			target.last = -1;
+			target.buffer = null;
+		}
+
+		// Lifetimes
+		for (int i = 0; i < nodes.size; i++) {
+			Node node = nodes.get(i);
+			for (Target input : node.inputs) {
+				if (input.first == -1)
+					throw new GdxRuntimeException("Node " + i + " reads a target not written by any previous node");
+				input.last = i;
+			}
+			Target output = node.output;
+			if (output != null) {
+				if (output.first == -1)
+					output.first = i;
+				output.last = i;
+			}
+		}
+
+		compiled = true;
+	}
+
+	@Override
+	public void rebind() {
+		FrameBufferStack.invalidate();
+		if (ownsPool)
+			pool.rebind();
+		for (Node node : nodes)
+			node.rebind();
+	}
+
+	@Override
+	public void render(Texture source, FrameBuffer destination) {
+		if (!compiled)
+			compile();
+
+		this.source = source;
+		this.destination = destination;
+
+		GLState.beginScope();
+		FrameBufferStack.beginBatch();
+
+		try {
+			for (int i = 0; i < nodes.size; i++) {
+				Node node = nodes.get(i);
+				Target output = node.output;
+				if (output != null && output.first == i)
+					output.buffer = output.renderFormat == null
+							? pool.obtain(output.format, output.width, output.height, output.hasDepth)
+							: pool.obtain(output.renderFormat, output.width, output.height, output.hasDepth);
+
+				node.render(this, output == null ? destination : output.buffer);
+				if (!node.isTracked())
+					GLState.invalidate();
+
+				// Give back Targets no longer used after this node
+				for (Target target : targets) {
+					if (target.last == i) {
+						pool.release(target.buffer);
+						target.buffer = null;
+					}
+				}
+			}
+		} finally {
+			// Give back Targets still leased should a node have thrown
+			for (Target target : targets) {
+				if (target.buffer != null) {
+					pool.release(target.buffer);
+					target.buffer = null;
+				}
+			}
+
+			FrameBufferStack.endBatch();
+			GLState.endScope();
+
+			this.source = null;
+			this.destination = null;
+
+			if (ownsPool)
+				pool.endFrame();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		if (ownsPool)
+			pool.dispose();
+	}
+
+	/**
+	 * A transient render target, backed by a FrameBuffer only while some node
+	 * needs it.
+	 */
+	public static final class Target {
+
+		/** The Pixmap.Format of the color buffer, null if a RenderFormat is used. */
+		public final Format format;
+		/** The RenderFormat of the color buffer, null if a Pixmap.Format is used. */
+		public final RenderFormat renderFormat;
+		public final int width;
+		public final int height;
+		public final boolean hasDepth;
+
+		// Index of first and last nodes using this Target
+		int first = -1;
+		int last = -1;
+
+		FrameBuffer buffer;
+
+		Target(Format format, RenderFormat renderFormat, int width, int height, boolean hasDepth) {
+			this.format = format;
+			this.renderFormat = renderFormat;
+			this.width = width;
+			this.height = height;
+			this.hasDepth = hasDepth;
+		}
+	}
+
+	/**
+	 * A rendering step of a RenderGraph, reading some Targets and writing
+	 * another one (or the destination).
+	 */
+	public abstract static class Node {
+
+		final Array<Target> inputs = new Array<Target>();
+		Target output = null;
+
+		/**
+		 * Declares Targets read by this node.
+		 *
+		 * @param targets
+		 *            the Targets read
+		 * @return this node for chaining
+		 */
+		public Node reads(Target... targets) {
+			inputs.addAll(targets);
+			return this;
+		}
+
+		/**
+		 * Declares the Target written by this node. Nodes writing no Target
+		 * render to the graph's destination.
+		 *
+		 * @param target
+		 *            the Target written
+		 * @return this node for chaining
+		 */
+		public Node writes(Target target) {
+			output = target;
+			return this;
+		}
+
+		/**
+		 * Rebinds node to OpenGL context.
+		 */
+		public void rebind() {
+		}
+
+		/**
+		 * Tells whether this node only changes GL state through GLState.
+		 */
+		boolean isTracked() {
+			return false;
+		}
+
+		/**
+		 * Renders this node.
+		 *
+		 * @param graph
+		 *            the RenderGraph, to get the source and Targets' textures
+		 *            from
+		 * @param output
+		 *            the FrameBuffer to write to, null for the backbuffer
+		 */
+		protected abstract void render(RenderGraph graph, FrameBuffer output);
+	}
+
+	/**
+	 * A node applying a VisualEffect on either the source or a Target.
+	 */
+	public static class EffectNode extends Node {
+
+		private final VisualEffect effect;
+		private final Target input;
+
+		/**
+		 * Instantiates a new EffectNode.
+		 *
+		 * @param effect
+		 *            the VisualEffect to apply
+		 * @param input
+		 *            the Target to read from, null for the graph's source
+		 */
+		public EffectNode(VisualEffect effect, Target input) {
+			this.effect = effect;
+			this.input = input;
+			if (input != null)
+				reads(input);
+		}
+
+		@Override
+		public void rebind() {
+			effect.rebind();
+		}
+
+		@Override
+		boolean isTracked() {
+			return GLState.isTracked(effect);
+		}
+
+		@Override
+		protected void render(RenderGraph graph, FrameBuffer output) {
+			effect.render(input == null ? graph.getSource() : graph.getTexture(input), output);
+		}
+	}
+}
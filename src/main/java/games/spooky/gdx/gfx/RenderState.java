@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.graphics.GL20;
+
+/**
+ * An immutable set of fixed-function states a rendering pass needs: blending
+ * and blend function, depth test, color mask and scissor. Applied through
+ * GLState, so that only the differences with the previous pass are actually
+ * set.
+ */
+public final class RenderState {
+
+	/** No blending, no depth test, all components written, no scissor. */
+	public static final RenderState OPAQUE = new RenderState(false, GL20.GL_ONE, GL20.GL_ZERO, false, true, true, true, true, false, 0, 0, 0, 0);
+
+	/** Regular alpha blending. */
+	public static final RenderState ALPHA_BLEND = OPAQUE.withBlending(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+	/** Alpha blending with premultiplied alpha. */
+	public static final RenderState PREMULTIPLIED = OPAQUE.withBlending(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+	/** Additive blending. */
+	public static final RenderState ADDITIVE = OPAQUE.withBlending(GL20.GL_ONE, GL20.GL_ONE);
+
+	public final boolean blending;
+	public final int blendSrc;
+	public final int blendDst;
+
+	public final boolean depthTest;
+
+	public final boolean redMask;
+	public final boolean greenMask;
+	public final boolean blueMask;
+	public final boolean alphaMask;
+
+	public final boolean scissor;
+	public final int scissorX;
+	public final int scissorY;
+	public final int scissorWidth;
+	public final int scissorHeight;
+
+	private RenderState(boolean blending, int blendSrc, int blendDst, boolean depthTest, boolean redMask,
+			boolean greenMask, boolean blueMask, boolean alphaMask, boolean scissor, int scissorX, int scissorY,
+			int scissorWidth, int scissorHeight) {
+		this.blending = blending;
+		this.blendSrc = blendSrc;
+		this.blendDst = blendDst;
+		this.depthTest = depthTest;
+		this.redMask = redMask;
+		this.greenMask = greenMask;
+		this.blueMask = blueMask;
+		this.alphaMask = alphaMask;
+		this.scissor = scissor;
+		this.scissorX = scissorX;
+		this.scissorY = scissorY;
+		this.scissorWidth = scissorWidth;
+		this.scissorHeight = scissorHeight;
+	}
+
+	/**
+	 * Derives a RenderState with blending enabled.
+	 *
+	 * @param src
+	 *            the source blend factor
+	 * @param dst
+	 *            the destination blend factor
+	 * @return a new RenderState with given blending
+	 */
+	public RenderState withBlending(int src, int dst) {
+		return new RenderState(true, src, dst, depthTest, redMask, greenMask, blueMask, alphaMask, scissor, scissorX,
+				scissorY, scissorWidth, scissorHeight);
+	}
+
+	/**
+	 * Derives a RenderState with blending disabled.
+	 *
+	 * @return a new RenderState without blending
+	 */
+	public RenderState withoutBlending() {
+		return new RenderState(false, GL20.GL_ONE, GL20.GL_ZERO, depthTest, redMask, greenMask, blueMask, alphaMask,
+				scissor, scissorX, scissorY, scissorWidth, scissorHeight);
+	}
+
+	/**
+	 * Derives a RenderState with given depth test.
+	 *
+	 * @param depthTest
+	 *            whether depth test is enabled
+	 * @return a new RenderState with given depth test
+	 */
+	public RenderState withDepthTest(boolean depthTest) {
+		return new RenderState(blending, blendSrc, blendDst, depthTest, redMask, greenMask, blueMask, alphaMask, scissor,
+				scissorX, scissorY, scissorWidth, scissorHeight);
+	}
+
+	/**
+	 * Derives a RenderState with given color mask.
+	 *
+	 * @param red
+	 *            whether red is written
+	 * @param green
+	 *            whether green is written
+	 * @param blue
+	 *            whether blue is written
+	 * @param alpha
+	 *            whether alpha is written
+	 * @return a new RenderState with given color mask
+	 */
+	public RenderState withColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		return new RenderState(blending, blendSrc, blendDst, depthTest, red, green, blue, alpha, scissor, scissorX,
+				scissorY, scissorWidth, scissorHeight);
+	}
+
+	/**
+	 * Derives a RenderState restricted to given scissor box.
+	 *
+	 * @param x
+	 *            the box x
+	 * @param y
+	 *            the box y
+	 * @param width
+	 *            the box width
+	 * @param height
+	 *            the box height
+	 * @return a new RenderState with given scissor box
+	 */
+	public RenderState withScissor(int x, int y, int width, int height) {
+		return new RenderState(blending, blendSrc, blendDst, depthTest, redMask, greenMask, blueMask, alphaMask, true,
+				x, y, width, height);
+	}
+
+	/**
+	 * Derives a RenderState without scissor test.
+	 *
+	 * @return a new RenderState without scissor
+	 */
+	public RenderState withoutScissor() {
+		return new RenderState(blending, blendSrc, blendDst, depthTest, redMask, greenMask, blueMask, alphaMask, false,
+				0, 0, 0, 0);
+	}
+
+	/**
+	 * Sets this state through GLState, thus only issuing GL calls for what
+	 * differs from the current state.
+	 */
+	public void apply() {
+		GLState.setBlending(blending);
+		if (blending)
+			GLState.setBlendFunction(blendSrc, blendDst);
+		GLState.setDepthTest(depthTest);
+		GLState.setColorMask(redMask, greenMask, blueMask, alphaMask);
+		GLState.setScissorTest(scissor);
+		if (scissor)
+			GLState.setScissor(scissorX, scissorY, scissorWidth, scissorHeight);
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.Application.ApplicationType;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Depth (and stencil, where packed depth-stencil is available) renderbuffers
+ * shared by all FrameBuffers of the same size. FrameBuffers are to be created
+ * without depth, then attached to the shared depth buffer of their size.
+ * <p>
+ * Sharing only suits FrameBuffers whose passes do not need depth contents to
+ * survive other passes, as is the case of post-processing passes clearing
+ * depth first. A shared depth buffer is deleted when the last FrameBuffer
+ * attached to it is detached.
+ * <p>
+ * After OpenGL context loss, shared depth buffers are recreated and
+ * reattached on first use through attach() or rebind().
+ */
+public final class SharedDepthBuffer {
+
+	private SharedDepthBuffer() {
+	}
+
+	// From OES_packed_depth_stencil, for OpenGL ES 2.0
+	private static final int GL_DEPTH24_STENCIL8_OES = 0x88F0;
+
+	private static final Array<Depth> depths = new Array<Depth>();
+
+	// Context generation renderbuffers were last created in
+	private static int generation = ContextRecovery.getGeneration();
+
+	/**
+	 * Attaches the shared depth buffer of its size to given FrameBuffer,
+	 * creating the depth buffer if needed. The FrameBuffer must have been
+	 * created without depth.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer to attach
+	 */
+	public static void attach(FrameBuffer buffer) {
+		rebind();
+
+		Depth depth = find(buffer.getWidth(), buffer.getHeight());
+		if (depth == null) {
+			depth = new Depth(buffer.getWidth(), buffer.getHeight());
+			depth.create();
+			depths.add(depth);
+		} else if (depth.buffers.contains(buffer, true)) {
+			return;
+		}
+
+		try {
+			depth.attach(buffer);
+			depth.buffers.add(buffer);
+		} finally {
+			if (depth.buffers.size == 0) {
+				depths.removeValue(depth, true);
+				depth.delete();
+			}
+			FrameBufferStack.rebind();
+		}
+	}
+
+	/**
+	 * Detaches given FrameBuffer from its shared depth buffer, deleting the
+	 * depth buffer if no longer used. To be called before disposing the
+	 * FrameBuffer.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer to detach
+	 */
+	public static void detach(FrameBuffer buffer) {
+		Depth depth = find(buffer.getWidth(), buffer.getHeight());
+		if (depth == null || !depth.buffers.removeValue(buffer, true))
+			throw new GdxRuntimeException("FrameBuffer is not attached to a shared depth buffer");
+		if (depth.buffers.size == 0) {
+			depths.removeValue(depth, true);
+			if (generation == ContextRecovery.getGeneration())
+				depth.delete();
+		}
+	}
+
+	/**
+	 * Tells whether given FrameBuffer is attached to a shared depth buffer.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer
+	 * @return true if attached, false otherwise
+	 */
+	public static boolean isAttached(FrameBuffer buffer) {
+		Depth depth = find(buffer.getWidth(), buffer.getHeight());
+		return depth != null && depth.buffers.contains(buffer, true);
+	}
+
+	/**
+	 * Recreates shared depth buffers and attaches them again, if the OpenGL
+	 * context has been lost since they were created. Does nothing otherwise.
+	 */
+	public static void rebind() {
+		if (generation == ContextRecovery.getGeneration())
+			return;
+		generation = ContextRecovery.getGeneration();
+		try {
+			for (int i = 0; i < depths.size; i++) {
+				Depth depth = depths.get(i);
+				depth.create();
+				for (int j = 0; j < depth.buffers.size; j++)
+					depth.attach(depth.buffers.get(j));
+			}
+		} finally {
+			FrameBufferStack.rebind();
+		}
+	}
+
+	/**
+	 * Gets the count of shared depth buffers.
+	 *
+	 * @return the count of depth buffers
+	 */
+	public static int getDepthBufferCount() {
+		return depths.size;
+	}
+
+	/**
+	 * Gets the estimated memory used by shared depth buffers.
+	 *
+	 * @return the estimated size in bytes
+	 */
+	public static long getEstimatedBytes() {
+		long bytes = 0L;
+		for (int i = 0; i < depths.size; i++) {
+			Depth depth = depths.get(i);
+			bytes += (long) depth.width * depth.height * (depth.stencil ? 4 : 2);
+		}
+		return bytes;
+	}
+
+	private static Depth find(int width, int height) {
+		for (int i = 0; i < depths.size; i++) {
+			Depth depth = depths.get(i);
+			if (depth.width == width && depth.height == height)
+				return depth;
+		}
+		return null;
+	}
+
+	private static class Depth {
+
+		final int width;
+		final int height;
+		final Array<FrameBuffer> buffers = new Array<FrameBuffer>();
+
+		int handle;
+		boolean stencil;
+
+		Depth(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		void create() {
+			GL20 gl = Gdx.gl20;
+			int internalFormat;
+			if (Gdx.graphics.isGL30Available() || Gdx.app.getType() == ApplicationType.Desktop) {
+				internalFormat = GL30.GL_DEPTH24_STENCIL8;
+				stencil = true;
+			} else if (Gdx.graphics.supportsExtension("GL_OES_packed_depth_stencil")) {
+				internalFormat = GL_DEPTH24_STENCIL8_OES;
+				stencil = true;
+			} else {
+				internalFormat = GL20.GL_DEPTH_COMPONENT16;
+				stencil = false;
+			}
+			handle = gl.glGenRenderbuffer();
+			gl.glBindRenderbuffer(GL20.GL_RENDERBUFFER, handle);
+			gl.glRenderbufferStorage(GL20.GL_RENDERBUFFER, internalFormat, width, height);
+			gl.glBindRenderbuffer(GL20.GL_RENDERBUFFER, 0);
+		}
+
+		void attach(FrameBuffer buffer) {
+			GL20 gl = Gdx.gl20;
+			buffer.bind();
+			gl.glFramebufferRenderbuffer(GL20.GL_FRAMEBUFFER, GL20.GL_DEPTH_ATTACHMENT, GL20.GL_RENDERBUFFER, handle);
+			if (stencil)
+				gl.glFramebufferRenderbuffer(GL20.GL_FRAMEBUFFER, GL20.GL_STENCIL_ATTACHMENT, GL20.GL_RENDERBUFFER,
+						handle);
+			int status = gl.glCheckFramebufferStatus(GL20.GL_FRAMEBUFFER);
+			if (status != GL20.GL_FRAMEBUFFER_COMPLETE)
+				throw new GdxRuntimeException("Frame buffer incomplete with shared depth buffer: " + status);
+		}
+
+		void delete() {
+			Gdx.gl20.glDeleteRenderbuffer(handle);
+		}
+	}
+}
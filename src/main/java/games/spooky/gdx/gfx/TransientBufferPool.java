@@ -0,0 +1,389 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * The TransientBufferPool hands out FrameBuffers of a given format, size and
+ * depth for the duration of a frame at most. Leased FrameBuffers are returned
+ * either explicitly with release() or all at once with endFrame(), and may
+ * then be leased again by anyone asking for the same kind of FrameBuffer.
+ * <p>
+ * An optional budget bounds the estimated memory used by the pool: when over
+ * budget, idle FrameBuffers are disposed, least recently used first. Leased
+ * FrameBuffers are never evicted, so the budget may temporarily be exceeded.
+ * <p>
+ * FrameBuffers' color textures are created with ClampToEdge wrapping.
+ * <p>
+ * With shared depth enabled, FrameBuffers with depth are created without one
+ * and attached to the {@link SharedDepthBuffer} of their size instead.
+ */
+public class TransientBufferPool implements Disposable {
+
+	private final Array<Entry> entries = new Array<Entry>();
+
+	private long budget = Long.MAX_VALUE;
+	private boolean sharedDepth = false;
+	private long bytes = 0L;
+
+	private long tick = 0L;
+	private int leased = 0;
+	private int evictions = 0;
+
+	// Context generation textures were last set up in
+	private int generation = ContextRecovery.getGeneration();
+
+	/**
+	 * Gets the memory budget of this pool.
+	 *
+	 * @return the budget in bytes, Long.MAX_VALUE if unbounded
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the memory budget of this pool, evicting idle FrameBuffers if
+	 * needed.
+	 *
+	 * @param budget
+	 *            the budget in bytes, Long.MAX_VALUE for no bound
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	/**
+	 * Tells whether FrameBuffers with depth share their depth buffer.
+	 *
+	 * @return true if depth is shared, false otherwise
+	 */
+	public boolean isSharedDepth() {
+		return sharedDepth;
+	}
+
+	/**
+	 * Sets whether FrameBuffers with depth share their depth buffer with
+	 * other FrameBuffers of the same size. Only affects FrameBuffers created
+	 * afterwards. Depth contents are then not preserved from one lease to the
+	 * next.
+	 *
+	 * @param sharedDepth
+	 *            true to share depth buffers, false otherwise
+	 */
+	public void setSharedDepth(boolean sharedDepth) {
+		this.sharedDepth = sharedDepth;
+	}
+
+	/**
+	 * Leases a FrameBuffer of given characteristics until release() or
+	 * endFrame() is called, whichever comes first.
+	 *
+	 * @param format
+	 *            the format of the color buffer
+	 * @param width
+	 *            the width of the FrameBuffer
+	 * @param height
+	 *            the height of the FrameBuffer
+	 * @param hasDepth
+	 *            whether to attach a depth buffer
+	 * @return a FrameBuffer for exclusive use until released
+	 */
+	public FrameBuffer obtain(Format format, int width, int height, boolean hasDepth) {
+		return obtain(format, null, width, height, hasDepth);
+	}
+
+	/**
+	 * Leases a FrameBuffer of given characteristics until release() or
+	 * endFrame() is called, whichever comes first. Unsupported formats fall
+	 * back to the closest supported one.
+	 *
+	 * @param format
+	 *            the format of the color buffer
+	 * @param width
+	 *            the width of the FrameBuffer
+	 * @param height
+	 *            the height of the FrameBuffer
+	 * @param hasDepth
+	 *            whether to attach a depth buffer
+	 * @return a FrameBuffer for exclusive use until released
+	 */
+	public FrameBuffer obtain(RenderFormat format, int width, int height, boolean hasDepth) {
+		format = format.resolve();
+		if (format.pixmapFormat != null)
+			return obtain(format.pixmapFormat, null, width, height, hasDepth);
+		return obtain(null, format, width, height, hasDepth);
+	}
+
+	private FrameBuffer obtain(Format format, RenderFormat renderFormat, int width, int height, boolean hasDepth) {
+		// FrameBuffers recreated after context loss come with new textures
+		if (generation != ContextRecovery.getGeneration()) {
+			long start = TimeUtils.nanoTime();
+			rebind();
+			ContextRecovery.reportRecovery(start);
+		}
+
+		Entry entry = null;
+		for (int i = 0; i < entries.size; i++) {
+			Entry candidate = entries.get(i);
+			if (!candidate.leased && candidate.matches(format, renderFormat, width, height, hasDepth)) {
+				entry = candidate;
+				break;
+			}
+		}
+
+		if (entry == null) {
+			boolean shared = hasDepth && sharedDepth;
+			boolean ownDepth = hasDepth && !shared;
+			FrameBuffer buffer = renderFormat == null ? new FrameBuffer(format, width, height, ownDepth)
+					: renderFormat.createFrameBuffer(width, height, ownDepth);
+			buffer.getColorBufferTexture().setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+			if (shared)
+				SharedDepthBuffer.attach(buffer);
+			// Building and wrapping bound its texture and the default FrameBuffer behind our back
+			GLState.invalidateTextures();
+			FrameBufferStack.invalidate();
+			long size = renderFormat == null ? estimateBytes(format, width, height, ownDepth)
+					: estimateBytes(renderFormat, width, height, ownDepth);
+			entry = new Entry(buffer, format, renderFormat, hasDepth, shared, size);
+			entries.add(entry);
+			bytes += entry.bytes;
+		}
+
+		entry.leased = true;
+		entry.lastUse = ++tick;
+		leased++;
+
+		evict();
+
+		return entry.buffer;
+	}
+
+	/**
+	 * Returns a leased FrameBuffer to the pool before the end of the frame.
+	 *
+	 * @param buffer
+	 *            the FrameBuffer obtained from this pool
+	 */
+	public void release(FrameBuffer buffer) {
+		Entry entry = find(buffer);
+		if (entry == null || !entry.leased)
+			throw new GdxRuntimeException("FrameBuffer is not leased from this pool");
+		entry.leased = false;
+		leased--;
+	}
+
+	/**
+	 * Returns all leased FrameBuffers to the pool, then evicts idle
+	 * FrameBuffers if over budget. To be called once per frame.
+	 */
+	public void endFrame() {
+		for (int i = 0; i < entries.size; i++)
+			entries.get(i).leased = false;
+		leased = 0;
+		evict();
+	}
+
+	/**
+	 * Rebinds pool to OpenGL context.
+	 */
+	public void rebind() {
+		generation = ContextRecovery.getGeneration();
+		SharedDepthBuffer.rebind();
+		for (int i = 0; i < entries.size; i++)
+			entries.get(i).buffer.getColorBufferTexture().setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+		GLState.invalidateTextures();
+	}
+
+	/**
+	 * Gets the count of FrameBuffers in this pool, leased or not.
+	 *
+	 * @return the count of FrameBuffers
+	 */
+	public int getBufferCount() {
+		return entries.size;
+	}
+
+	/**
+	 * Gets the count of FrameBuffers currently leased.
+	 *
+	 * @return the count of leased FrameBuffers
+	 */
+	public int getLeasedCount() {
+		return leased;
+	}
+
+	/**
+	 * Gets the count of FrameBuffers disposed so far to stay within budget.
+	 *
+	 * @return the count of evictions
+	 */
+	public int getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the estimated memory used by this pool's FrameBuffers. Shared
+	 * depth buffers are accounted for by SharedDepthBuffer.
+	 *
+	 * @return the estimated size in bytes
+	 */
+	public long getEstimatedBytes() {
+		return bytes;
+	}
+
+	@Override
+	public void dispose() {
+		for (int i = 0; i < entries.size; i++)
+			entries.get(i).dispose();
+		entries.clear();
+		bytes = 0L;
+		leased = 0;
+	}
+
+	/**
+	 * Estimates the memory used by a FrameBuffer of given characteristics.
+	 * Drivers may pad or compress, so this is only an estimate.
+	 *
+	 * @param format
+	 *            the format of the color buffer
+	 * @param width
+	 *            the width of the FrameBuffer
+	 * @param height
+	 *            the height of the FrameBuffer
+	 * @param hasDepth
+	 *            whether a depth buffer is attached
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateBytes(Format format, int width, int height, boolean hasDepth) {
+		int bytesPerPixel;
+		switch (format) {
+		case Alpha:
+		case Intensity:
+			bytesPerPixel = 1;
+			break;
+		case LuminanceAlpha:
+		case RGB565:
+		case RGBA4444:
+			bytesPerPixel = 2;
+			break;
+		default:
+			// RGB888 is usually padded to 4 bytes
+			bytesPerPixel = 4;
+			break;
+		}
+		if (hasDepth)
+			bytesPerPixel += 2; // GL_DEPTH_COMPONENT16
+		return (long) width * height * bytesPerPixel;
+	}
+
+	/**
+	 * Estimates the memory used by a FrameBuffer of given characteristics.
+	 * Drivers may pad or compress, so this is only an estimate.
+	 *
+	 * @param format
+	 *            the format of the color buffer
+	 * @param width
+	 *            the width of the FrameBuffer
+	 * @param height
+	 *            the height of the FrameBuffer
+	 * @param hasDepth
+	 *            whether a depth buffer is attached
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateBytes(RenderFormat format, int width, int height, boolean hasDepth) {
+		int bytesPerPixel = format.bytesPerPixel;
+		if (hasDepth)
+			bytesPerPixel += 2; // GL_DEPTH_COMPONENT16
+		return (long) width * height * bytesPerPixel;
+	}
+
+	private Entry find(FrameBuffer buffer) {
+		for (int i = 0; i < entries.size; i++) {
+			Entry entry = entries.get(i);
+			if (entry.buffer == buffer)
+				return entry;
+		}
+		return null;
+	}
+
+	private void evict() {
+		while (bytes > budget) {
+			int lru = -1;
+			for (int i = 0; i < entries.size; i++) {
+				Entry entry = entries.get(i);
+				if (!entry.leased && (lru == -1 || entry.lastUse < entries.get(lru).lastUse))
+					lru = i;
+			}
+			if (lru == -1)
+				break;
+			Entry entry = entries.removeIndex(lru);
+			entry.dispose();
+			bytes -= entry.bytes;
+			evictions++;
+		}
+	}
+
+	private static class Entry {
+
+		final FrameBuffer buffer;
+		final Format format;
+		final RenderFormat renderFormat;
+		final boolean hasDepth;
+		final boolean sharedDepth;
+		final long bytes;
+
+		boolean leased = false;
+		long lastUse = 0L;
+
+		Entry(FrameBuffer buffer, Format format, RenderFormat renderFormat, boolean hasDepth, boolean sharedDepth,
+				long bytes) {
+			this.buffer = buffer;
+			this.format = format;
+			this.renderFormat = renderFormat;
+			this.hasDepth = hasDepth;
+			this.sharedDepth = sharedDepth;
+			this.bytes = bytes;
+		}
+
+		boolean matches(Format format, RenderFormat renderFormat, int width, int height, boolean hasDepth) {
+			return this.format == format && this.renderFormat == renderFormat && buffer.getWidth() == width
+					&& buffer.getHeight() == height && this.hasDepth == hasDepth;
+		}
+
+		void dispose() {
+			if (sharedDepth)
+				SharedDepthBuffer.detach(buffer);
+			buffer.dispose();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+
+/**
+ * Base class for array parameters. Keeps track of the range of elements
+ * changed since last upload, so that only this range gets uploaded.
+ */
+abstract class ArrayShaderParameter extends ShaderParameter {
+
+	private static final int UNRESOLVED = -2;
+
+	/** Count of floats per element. */
+	private final int elementSize;
+
+	/** Count of floats, -1 until first value. */
+	int length = -1;
+	float[] value;
+
+	// Range of changed elements, start inclusive, end exclusive
+	private int dirtyStart = 0;
+	private int dirtyEnd = 0;
+
+	private int[] elementLocations = null;
+
+	ArrayShaderParameter(String name, int elementSize) {
+		super(name);
+		this.elementSize = elementSize;
+	}
+
+	/**
+	 * Gets the count of elements in this array parameter.
+	 *
+	 * @return the count of elements, 0 if no value was ever set
+	 */
+	public int size() {
+		return length == -1 ? 0 : length / elementSize;
+	}
+
+	/**
+	 * Marks a range of elements as changed, then triggers event.
+	 *
+	 * @param start
+	 *            index of the first changed element
+	 * @param end
+	 *            index after the last changed element
+	 */
+	final void elementsChanged(int start, int end) {
+		if (dirtyStart >= dirtyEnd) {
+			dirtyStart = start;
+			dirtyEnd = end;
+		} else {
+			if (start < dirtyStart)
+				dirtyStart = start;
+			if (end > dirtyEnd)
+				dirtyEnd = end;
+		}
+		valueChanged();
+	}
+
+	@Override
+	void invalidate() {
+		super.invalidate();
+		elementLocations = null;
+		markForUpload();
+	}
+
+	@Override
+	void markForUpload() {
+		dirtyStart = 0;
+		dirtyEnd = size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
+	 * graphics.glutils.ShaderProgram, int)
+	 */
+	@Override
+	protected void apply(ShaderProgram shader, int location) {
+		if (dirtyStart >= dirtyEnd)
+			return;
+
+		int start = dirtyStart;
+		if (start > 0)
+			location = resolveElementLocation(shader, start);
+		if (location >= 0)
+			upload(shader, location, start * elementSize, (dirtyEnd - start) * elementSize);
+
+		dirtyStart = dirtyEnd = 0;
+	}
+
+	/**
+	 * Uploads part of the array, using shader.setUniform*fv and such.
+	 *
+	 * @param shader
+	 *            the ShaderProgram to upload to
+	 * @param location
+	 *            the location of the first element to upload
+	 * @param offset
+	 *            the offset of the first float to upload
+	 * @param count
+	 *            the count of floats to upload
+	 */
+	abstract void upload(ShaderProgram shader, int location, int offset, int count);
+
+	private int resolveElementLocation(ShaderProgram shader, int index) {
+		if (elementLocations == null) {
+			elementLocations = new int[size()];
+			for (int i = 0; i < elementLocations.length; i++)
+				elementLocations[i] = UNRESOLVED;
+		}
+		int location = elementLocations[index];
+		if (location == UNRESOLVED) {
+			location = shader.fetchUniformLocation(name + '[' + index + ']', false);
+			elementLocations[index] = location;
+		}
+		return location;
+	}
+
+}
@@ -59,11 +59,24 @@ public class ColorShaderParameter extends ShaderParameter {
 	 * 
 	 * @see
 	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	 * graphics.glutils.ShaderProgram, int)
 	 */
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniformf(name, value);
+	protected void apply(ShaderProgram shader, int location) {
+		shader.setUniformf(location, value);
+	}
+
+	@Override
+	int getComponentCount() {
+		return 4;
+	}
+
+	@Override
+	void pack(float[] data, int offset) {
+		data[offset] = value.r;
+		data[offset + 1] = value.g;
+		data[offset + 2] = value.b;
+		data[offset + 3] = value.a;
 	}
 
 }
@@ -23,17 +23,12 @@
  */
 package games.spooky.gdx.gfx.shader;
 
-import java.util.Arrays;
-
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 
-public class FloatArrayShaderParameter extends ShaderParameter {
-
-	private int length = -1;
-	private float[] value;
+public class FloatArrayShaderParameter extends ArrayShaderParameter {
 
 	FloatArrayShaderParameter(String name) {
-		super(name);
+		super(name, 1);
 	}
 
 	public float[] getValue() {
@@ -41,9 +36,9 @@ public class FloatArrayShaderParameter extends ShaderParameter {
 	}
 
 	/**
-	 * Sets the value of this color parameter. Event is triggered only if new
-	 * float array is different from former float array, tested with array
-	 * length and java.util.Arrays.equals().
+	 * Sets the value of this float array parameter. Event is triggered only if
+	 * new float array is different from former float array, tested value by
+	 * value. Only the range of values actually changed will be uploaded.
 	 *
 	 * @param value
 	 *            the new float[] value
@@ -53,25 +48,45 @@ public class FloatArrayShaderParameter extends ShaderParameter {
 		if (this.length == -1) {
 			this.value = value;
 			this.length = value.length;
-			valueChanged();
-		} else if (value.length <= this.length && !Arrays.equals(this.value, value)) {
-			for (int i = 0; i < value.length; i++)
-				this.value[i] = value[i];
-			valueChanged();
+			elementsChanged(0, length);
+		} else if (value.length <= this.length) {
+			int start = -1;
+			int end = -1;
+			for (int i = 0; i < value.length; i++) {
+				if (this.value[i] != value[i]) {
+					this.value[i] = value[i];
+					if (start == -1)
+						start = i;
+					end = i;
+				}
+			}
+			if (start != -1)
+				elementsChanged(start, end + 1);
 		}
 		return this;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	/**
+	 * Sets a single value of this float array parameter. Event is triggered
+	 * only if new float is different from former float.
+	 *
+	 * @param index
+	 *            the index of the value to set
+	 * @param value
+	 *            the new float value
+	 * @return this shader parameter, for chaining
 	 */
+	public FloatArrayShaderParameter set(int index, float value) {
+		if (this.value[index] != value) {
+			this.value[index] = value;
+			elementsChanged(index, index + 1);
+		}
+		return this;
+	}
+
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniform1fv(name, value, 0, length);
+	void upload(ShaderProgram shader, int location, int offset, int count) {
+		shader.setUniform1fv(location, value, offset, count);
 	}
 
 }
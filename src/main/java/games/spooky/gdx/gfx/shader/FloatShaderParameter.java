@@ -58,11 +58,21 @@ public class FloatShaderParameter extends ShaderParameter {
 	 * 
 	 * @see
 	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	 * graphics.glutils.ShaderProgram, int)
 	 */
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniformf(name, value);
+	protected void apply(ShaderProgram shader, int location) {
+		shader.setUniformf(location, value);
+	}
+
+	@Override
+	int getComponentCount() {
+		return 1;
+	}
+
+	@Override
+	void pack(float[] data, int offset) {
+		data[offset] = value;
 	}
 
 }
@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import games.spooky.gdx.gfx.CommonShaders;
+
+/**
+ * A single rendering pass applying the transforms of several
+ * PointwiseShaderEffects one after the other. The uniforms of each effect are
+ * renamed in the generated shader, and effects' parameters are uploaded from
+ * the effects themselves whenever they change.
+ */
+public class FusedShaderEffect extends SinglePassShaderEffect {
+
+	private final Array<PointwiseShaderEffect> effects;
+
+	// Parameters of fused effects, with their location in fused program and last version uploaded
+	private final Array<ShaderParameter> fusedParameters = new Array<ShaderParameter>();
+	private final IntArray suffixes = new IntArray();
+	private final IntArray locations = new IntArray();
+	private final IntArray versions = new IntArray();
+
+	// Texture inputs of fused effects, along with their counterpart in fused program
+	private final Array<TextureShaderParameter> fusedTextures = new Array<TextureShaderParameter>();
+	private final Array<TextureShaderParameter> textures = new Array<TextureShaderParameter>();
+
+	/**
+	 * Instantiates a new FusedShaderEffect. ShaderProgram is acquired from the
+	 * ShaderProgramRegistry and released upon disposal.
+	 *
+	 * @param effects
+	 *            the PointwiseShaderEffects to fuse, in order of application
+	 */
+	public FusedShaderEffect(Array<PointwiseShaderEffect> effects) {
+		super(ShaderProgramRegistry.acquire(CommonShaders.Screenspace, fragment(effects)));
+		this.effects = new Array<PointwiseShaderEffect>(effects);
+
+		for (int i = 0; i < effects.size; i++) {
+			Array<ShaderParameter> effectParameters = effects.get(i).getParameters();
+			for (int j = 0; j < effectParameters.size; j++) {
+				ShaderParameter parameter = effectParameters.get(j);
+				if (parameter instanceof TextureShaderParameter) {
+					// Source is chained in fused program, other inputs get units of their own
+					if (!parameter.name.equals("u_texture0")) {
+						fusedTextures.add((TextureShaderParameter) parameter);
+						textures.add(registerTexture(rename(parameter.name, i)));
+					}
+				} else {
+					fusedParameters.add(parameter);
+					suffixes.add(i);
+					versions.add(-1);
+				}
+			}
+		}
+		resolveLocations();
+	}
+
+	/**
+	 * Tells whether this FusedShaderEffect applies exactly given effects, in
+	 * the same order.
+	 *
+	 * @param effects
+	 *            the PointwiseShaderEffects to test
+	 * @return true if given effects are the ones fused, false otherwise
+	 */
+	public boolean fuses(Array<PointwiseShaderEffect> effects) {
+		if (effects.size != this.effects.size)
+			return false;
+		for (int i = 0; i < effects.size; i++)
+			if (effects.get(i) != this.effects.get(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Tells whether given effect is part of this FusedShaderEffect.
+	 *
+	 * @param effect
+	 *            the effect to test
+	 * @return true if given effect is fused, false otherwise
+	 */
+	public boolean contains(Object effect) {
+		for (int i = 0; i < effects.size; i++)
+			if (effects.get(i) == effect)
+				return true;
+		return false;
+	}
+
+	@Override
+	protected void revalidate() {
+		resolveLocations();
+		super.revalidate();
+	}
+
+	@Override
+	protected void flushParameters() {
+		// Other effects sharing the program may have overwritten fused uniforms
+		boolean all = !ownsProgram();
+
+		super.flushParameters();
+
+		for (int i = 0; i < fusedParameters.size; i++) {
+			ShaderParameter parameter = fusedParameters.get(i);
+			int location = locations.get(i);
+			if (location >= 0 && (all || versions.get(i) != parameter.version)) {
+				versions.set(i, parameter.version);
+				parameter.markForUpload();
+				parameter.apply(program, location);
+			}
+		}
+
+		// Fused effects' own programs are now out of date
+		for (int i = 0; i < effects.size; i++)
+			effects.get(i).disownProgram();
+	}
+
+	@Override
+	protected void actualRender(Texture source) {
+		for (int i = 0; i < textures.size; i++)
+			textures.get(i).setValue(fusedTextures.get(i).getValue());
+		super.actualRender(source);
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		ShaderProgramRegistry.release(program);
+	}
+
+	private void resolveLocations() {
+		locations.clear();
+		for (int i = 0; i < fusedParameters.size; i++)
+			locations.add(program.fetchUniformLocation(rename(fusedParameters.get(i).name, suffixes.get(i)), false));
+	}
+
+	private static String rename(String name, int suffix) {
+		return name + '_' + suffix;
+	}
+
+	private static String fragment(Array<PointwiseShaderEffect> effects) {
+		StringBuilder builder = new StringBuilder(CommonShaders.Precision);
+		builder.append("\nuniform sampler2D u_texture0;");
+		builder.append("\nvarying vec2 v_texCoords;\n");
+
+		for (int i = 0; i < effects.size; i++) {
+			PointwiseShaderEffect effect = effects.get(i);
+			Array<ShaderParameter> effectParameters = effect.getParameters();
+
+			// Rename transform function and uniforms, so that they don't clash
+			builder.append("\n#define transform ").append(rename("transform", i));
+			for (int j = 0; j < effectParameters.size; j++) {
+				String name = effectParameters.get(j).name;
+				builder.append("\n#define ").append(name).append(' ').append(rename(name, i));
+			}
+			builder.append('\n').append(effect.getTransform()).append('\n');
+			builder.append("\n#undef transform");
+			for (int j = 0; j < effectParameters.size; j++)
+				builder.append("\n#undef ").append(effectParameters.get(j).name);
+			builder.append('\n');
+		}
+
+		builder.append("\nvoid main()");
+		builder.append("\n{");
+		builder.append("\n	vec4 color = texture2D(u_texture0, v_texCoords);");
+		for (int i = 0; i < effects.size; i++)
+			builder.append("\n	color = ").append(rename("transform", i)).append("(color);");
+		builder.append("\n	gl_FragColor = color;");
+		builder.append("\n}");
+		return builder.toString();
+	}
+}
@@ -58,11 +58,11 @@ public class IntShaderParameter extends ShaderParameter {
 	 * 
 	 * @see
 	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	 * graphics.glutils.ShaderProgram, int)
 	 */
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniformi(name, value);
+	protected void apply(ShaderProgram shader, int location) {
+		shader.setUniformi(location, value);
 	}
 
 }
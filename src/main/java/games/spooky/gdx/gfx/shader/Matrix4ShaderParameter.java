@@ -59,11 +59,11 @@ public class Matrix4ShaderParameter extends ShaderParameter {
 	 * 
 	 * @see
 	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	 * graphics.glutils.ShaderProgram, int)
 	 */
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniformMatrix(name, value);
+	protected void apply(ShaderProgram shader, int location) {
+		shader.setUniformMatrix(location, value);
 	}
 
 }
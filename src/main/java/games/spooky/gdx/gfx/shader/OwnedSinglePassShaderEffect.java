@@ -23,17 +23,17 @@
  */
 package games.spooky.gdx.gfx.shader;
 
-import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-
 /**
  * A SinglePassShaderEffect which is responsible for the creation and
- * destruction of the ShaderProgram.
+ * destruction of the ShaderProgram. ShaderPrograms are shared through the
+ * ShaderProgramRegistry, so several instances of the same effect compile only
+ * once.
  */
 public class OwnedSinglePassShaderEffect extends SinglePassShaderEffect {
 
 	/**
 	 * Instantiates a new OwnedSinglePassShaderEffect. It owns the shader, so
-	 * will dispose it in the end.
+	 * will release it in the end.
 	 *
 	 * @param vertex
 	 *            the text for vertex shader
@@ -41,12 +41,12 @@ public class OwnedSinglePassShaderEffect extends SinglePassShaderEffect {
 	 *            the text for fragment shader
 	 */
 	public OwnedSinglePassShaderEffect(String vertex, String fragment) {
-		super(new ShaderProgram(vertex, fragment));
+		super(ShaderProgramRegistry.acquire(vertex, fragment));
 	}
 
 	@Override
 	public void dispose() {
 		super.dispose();
-		program.dispose();
+		ShaderProgramRegistry.release(program);
 	}
 }
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import games.spooky.gdx.gfx.CommonShaders;
+
+/**
+ * A single-pass effect which only transforms the color of each pixel, read at
+ * its unmodified coordinates. Such effects are described by a GLSL function
+ * of signature <code>vec4 transform(vec4 color)</code>, possibly along with
+ * uniform declarations, and may be fused together by MultiVisualEffect into a
+ * single rendering pass.
+ * <p>
+ * The transform code may use PRECISION but should not declare u_texture0 nor
+ * v_texCoords.
+ */
+public class PointwiseShaderEffect extends SinglePassShaderEffect {
+
+	private final String transform;
+
+	/**
+	 * Instantiates a new PointwiseShaderEffect. ShaderProgram is acquired from
+	 * the ShaderProgramRegistry and released upon disposal.
+	 *
+	 * @param transform
+	 *            GLSL code defining the transform function
+	 */
+	public PointwiseShaderEffect(String transform) {
+		super(ShaderProgramRegistry.acquire(CommonShaders.Screenspace, fragment(transform)));
+		this.transform = transform;
+	}
+
+	/**
+	 * Gets the GLSL code defining this effect's transform function.
+	 *
+	 * @return the GLSL code of the transform function
+	 */
+	public String getTransform() {
+		return transform;
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		ShaderProgramRegistry.release(program);
+	}
+
+	private static String fragment(String transform) {
+		return CommonShaders.Precision
+				+ "\nuniform sampler2D u_texture0;"
+				+ "\nvarying vec2 v_texCoords;"
+				+ "\n"
+				+ "\n" + transform
+				+ "\n"
+				+ "\nvoid main()"
+				+ "\n{"
+				+ "\n	gl_FragColor = transform(texture2D(u_texture0, v_texCoords));"
+				+ "\n}";
+	}
+}
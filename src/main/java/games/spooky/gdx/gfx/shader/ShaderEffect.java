@@ -24,12 +24,8 @@
 package games.spooky.gdx.gfx.shader;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.Mesh.VertexDataType;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.VertexAttribute;
-import com.badlogic.gdx.graphics.VertexAttributes.Usage;
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Matrix3;
@@ -38,31 +34,52 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.TimeUtils;
 
-import games.spooky.gdx.gfx.VisualEffect;
+import games.spooky.gdx.gfx.BouncingBuffer;
+import games.spooky.gdx.gfx.ContextRecovery;
+import games.spooky.gdx.gfx.FrameBufferStack;
+import games.spooky.gdx.gfx.FullScreenTriangle;
+import games.spooky.gdx.gfx.GLState;
+import games.spooky.gdx.gfx.IdentityAwareEffect;
+import games.spooky.gdx.gfx.RenderState;
 import games.spooky.gdx.gfx.shader.ShaderParameter.ShaderParameterValueChangedListener;
 
-public abstract class ShaderEffect implements VisualEffect, Disposable {
+public abstract class ShaderEffect implements IdentityAwareEffect, Disposable {
 
 	protected static final int u_texture0 = 0;
 	protected static final int u_texture1 = 1;
 	protected static final int u_texture2 = 2;
 	protected static final int u_texture3 = 3;
 
-	// Mesh with *very* basic reference counting
-	protected static int meshRefCount = 0;
+	// Last effect to have uploaded its parameters to each ShaderProgram
+	private static final IdentityMap<ShaderProgram, ShaderEffect> programUsers = new IdentityMap<ShaderProgram, ShaderEffect>();
 
-	protected static Mesh mesh = null;
-
-	protected final ShaderProgram program;
+	protected ShaderProgram program;
+	private Mesh mesh;
 	private final Array<ShaderParameter> parameters = new Array<ShaderParameter>();
+	private final Array<ShaderParameter> dirtyParameters = new Array<ShaderParameter>();
+	private final Array<ShaderParameterBlock> blocks = new Array<ShaderParameterBlock>();
+	private final Array<TextureShaderParameter> textures = new Array<TextureShaderParameter>();
+	private final Vector2ShaderParameter uvScale;
 	private final ShaderParameterValueChangedListener listener = new ShaderParameterValueChangedListener() {
 		@Override
 		public void onValueChanged(ShaderParameter parameter) {
-			rebindParameter(parameter);
+			if (deferredParameters)
+				markDirty(parameter);
+			else
+				rebindParameter(parameter);
 		}
 	};
 
+	private boolean deferredParameters = true;
+
+	private RenderState renderState = RenderState.OPAQUE;
+
+	// Context generation this effect was last valid in
+	private int generation = ContextRecovery.getGeneration();
+
 	/**
 	 * Instantiates a new ShaderEffect. The ShaderEffect will NOT own shader
 	 * program, so it will not dispose it either!
@@ -72,34 +89,87 @@ public abstract class ShaderEffect implements VisualEffect, Disposable {
 	 */
 	public ShaderEffect(ShaderProgram program) {
 		this.program = program;
+		this.mesh = FullScreenTriangle.acquire();
 
-		if (meshRefCount++ <= 0) {
-			mesh = new Mesh(VertexDataType.VertexArray, true, 4, 0,
-					new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
-					new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
-
-			// @formatter:off
-			float[] verts = {
-					// vertex    texture
-					  -1, -1,    0f, 0f,
-					   1, -1,    1f, 0f,
-					   1,  1,    1f, 1f,
-					  -1,  1,    0f, 1f,
-			};
-			// @formatter:on
-
-			mesh.setVertices(verts);
-		}
+		// Used by CommonShaders.Screenspace, ignored by programs without it
+		uvScale = registerParameter("u_uvScale", 1f, 1f);
 	}
 
 	@Override
 	public void dispose() {
-		if (mesh != null && --meshRefCount <= 0) {
-			mesh.dispose();
+		if (programUsers.get(program) == this)
+			programUsers.remove(program);
+
+		if (mesh != null) {
+			FullScreenTriangle.release(mesh);
 			mesh = null;
 		}
 	}
 
+	/**
+	 * Switches this effect to another ShaderProgram, typically another
+	 * variant of the same shader. All parameters will be uploaded to the new
+	 * ShaderProgram on next render. The former ShaderProgram is not disposed.
+	 *
+	 * @param program
+	 *            the ShaderProgram to use from now on
+	 */
+	protected void setProgram(ShaderProgram program) {
+		if (this.program == program)
+			return;
+
+		if (programUsers.get(this.program) == this)
+			programUsers.remove(this.program);
+		this.program = program;
+
+		if (!deferredParameters) {
+			uploadNow();
+		}
+	}
+
+	/**
+	 * Scales texture coordinates of CommonShaders.Screenspace so that only the
+	 * part of given texture actually rendered to is sampled, that is the
+	 * lower-left part of a BouncingBuffer.SubTexture, or the whole texture
+	 * otherwise.
+	 *
+	 * @param texture
+	 *            the texture sampled with v_texCoords
+	 */
+	protected void setUVScale(Texture texture) {
+		if (texture instanceof BouncingBuffer.SubTexture) {
+			BouncingBuffer.SubTexture subTexture = (BouncingBuffer.SubTexture) texture;
+			uvScale.setValue(subTexture.getUScale(), subTexture.getVScale());
+		} else {
+			uvScale.setValue(1f, 1f);
+		}
+	}
+
+	public RenderState getRenderState() {
+		return renderState;
+	}
+
+	/**
+	 * Sets the fixed-function state this effect renders with. Defaults to
+	 * RenderState.OPAQUE, as most effects overwrite their whole destination.
+	 *
+	 * @param renderState
+	 *            the RenderState to render with
+	 */
+	public void setRenderState(RenderState renderState) {
+		this.renderState = renderState;
+	}
+
+	/**
+	 * Tells whether this effect currently leaves its source unchanged. Always
+	 * false by default, subclasses knowing better may override it, usually
+	 * from the values of their parameters.
+	 */
+	@Override
+	public boolean isIdentity() {
+		return false;
+	}
+
 	/**
 	 * Renders from a source FrameBuffer (using its color buffer texture) to a
 	 * destination FrameBuffer.
@@ -115,33 +185,176 @@ public abstract class ShaderEffect implements VisualEffect, Disposable {
 
 	@Override
 	public void render(Texture source, FrameBuffer destination) {
+		GLState.beginScope();
 		if (destination == null) {
+			FrameBufferStack.flush();
 			actualRender(source);
 		} else {
-			destination.begin();
+			FrameBufferStack.begin(destination);
 			actualRender(source);
-			destination.end();
+			FrameBufferStack.end(destination);
+		}
+		if (!isTextureTracked()) {
+			// Textures may have been bound behind GLState's back, on any unit
+			GLState.invalidateTextures();
+			GLState.setActiveUnit(0);
 		}
+		GLState.endScope();
+	}
+
+	/**
+	 * Tells whether this effect binds textures through GLState only, so that
+	 * GLState may still be trusted regarding textures after rendering. False
+	 * by default, as actualRender() may be overridden to bind textures
+	 * directly.
+	 *
+	 * @return true if textures are only bound through GLState, false
+	 *         otherwise
+	 */
+	protected boolean isTextureTracked() {
+		return false;
 	}
 
 	protected void actualRender(Texture source) {
-		program.begin();
-		mesh.render(program, GL20.GL_TRIANGLE_FAN, 0, 4);
-		program.end();
+		checkContext();
+		renderState.apply();
+		GLState.useProgram(program);
+		flushParameters();
+		for (int i = 0; i < textures.size; i++)
+			textures.get(i).bind();
+		FullScreenTriangle.render(mesh, program);
+
+		// Texture binding elsewhere (SpriteBatch...) expects unit 0 to be active
+		GLState.setActiveUnit(0);
 	}
 
 	@Override
 	public void rebind() {
+		revalidate();
+		generation = ContextRecovery.getGeneration();
+
+		if (!deferredParameters) {
+			uploadNow();
+		}
+	}
+
+	/**
+	 * Forgets everything tied to the GL context, so that it is looked up or
+	 * uploaded again on next use. Called by rebind(), or lazily on first use
+	 * after a context loss notified to ContextRecovery.
+	 */
+	protected void revalidate() {
+		// Uniform locations may have changed along with the GL context
+		for (int i = 0; i < parameters.size; i++)
+			parameters.get(i).invalidate();
+
+		// Every parameter will be uploaded on next flush
+		programUsers.remove(program);
+	}
+
+	private void checkContext() {
+		if (generation != ContextRecovery.getGeneration()) {
+			long start = TimeUtils.nanoTime();
+			revalidate();
+			generation = ContextRecovery.getGeneration();
+			ContextRecovery.reportRecovery(start);
+		}
+	}
+
+	/**
+	 * Tells whether parameter changes are deferred. When deferred (the
+	 * default), changed parameters are only uploaded on next render, while
+	 * the ShaderProgram is bound anyway. Otherwise every change is uploaded
+	 * immediately, binding the ShaderProgram on the spot.
+	 *
+	 * @return true if parameter changes are deferred, false otherwise
+	 */
+	public boolean isDeferredParameters() {
+		return deferredParameters;
+	}
+
+	/**
+	 * Sets whether parameter changes are deferred until next render or
+	 * uploaded immediately. Pending changes are uploaded when switching to
+	 * immediate mode.
+	 *
+	 * @param deferredParameters
+	 *            true to defer parameter changes, false to upload them
+	 *            immediately
+	 */
+	public void setDeferredParameters(boolean deferredParameters) {
+		this.deferredParameters = deferredParameters;
+		if (!deferredParameters && dirtyParameters.size > 0) {
+			uploadNow();
+		}
+	}
+
+	protected void rebindParameter(ShaderParameter parameter) {
+		checkContext();
 		program.begin();
-		for (ShaderParameter parameter : parameters)
+		if (programUsers.get(program) == this)
 			parameter.apply(program);
+		else
+			flushParameters();
 		program.end();
+		GLState.invalidateProgram();
 	}
 
-	protected void rebindParameter(ShaderParameter parameter) {
+	private void uploadNow() {
+		checkContext();
 		program.begin();
-		parameter.apply(program);
+		flushParameters();
 		program.end();
+		GLState.invalidateProgram();
+	}
+
+	/**
+	 * Uploads all parameters changed since last flush. If another effect
+	 * sharing the same ShaderProgram uploaded its own parameters in the
+	 * meantime, all parameters are uploaded. ShaderProgram must be bound
+	 * already.
+	 */
+	protected void flushParameters() {
+		if (programUsers.get(program) != this) {
+			programUsers.put(program, this);
+			for (int i = 0; i < parameters.size; i++) {
+				ShaderParameter parameter = parameters.get(i);
+				parameter.dirty = false;
+				parameter.markForUpload();
+				parameter.apply(program);
+			}
+		} else {
+			for (int i = 0; i < dirtyParameters.size; i++) {
+				ShaderParameter parameter = dirtyParameters.get(i);
+				parameter.dirty = false;
+				parameter.apply(program);
+			}
+		}
+		dirtyParameters.clear();
+	}
+
+	Array<ShaderParameter> getParameters() {
+		return parameters;
+	}
+
+	boolean ownsProgram() {
+		return programUsers.get(program) == this;
+	}
+
+	/**
+	 * Forgets this effect uploaded its parameters to its ShaderProgram, so
+	 * that they are all uploaded again on next flush.
+	 */
+	void disownProgram() {
+		if (programUsers.get(program) == this)
+			programUsers.remove(program);
+	}
+
+	private void markDirty(ShaderParameter parameter) {
+		if (!parameter.dirty) {
+			parameter.dirty = true;
+			dirtyParameters.add(parameter);
+		}
 	}
 
 	protected IntShaderParameter registerParameter(String name, int initialValue) {
@@ -188,9 +401,52 @@ public abstract class ShaderEffect implements VisualEffect, Disposable {
 		return registerParameter(new Matrix4ShaderParameter(name).setValue(initialValue));
 	}
 
+	/**
+	 * Registers a sampler parameter, assigned the next free texture unit of
+	 * this effect. Units are assigned from 0 in order of registration, so
+	 * that any number of texture inputs may be used without collision.
+	 * Should not be mixed with samplers registered as int parameters.
+	 *
+	 * @param name
+	 *            the name of the sampler uniform
+	 * @return the registered TextureShaderParameter
+	 */
+	protected TextureShaderParameter registerTexture(String name) {
+		TextureShaderParameter texture = registerParameter(new TextureShaderParameter(name, textures.size));
+		textures.add(texture);
+		return texture;
+	}
+
+	/**
+	 * Registers a ShaderParameterBlock. Parameters registered afterwards
+	 * whose name is part of the block's layout are packed into the block
+	 * instead of being uploaded on their own.
+	 *
+	 * @param layout
+	 *            the layout of the block, as declared in the shader
+	 * @return the registered ShaderParameterBlock
+	 */
+	protected ShaderParameterBlock registerParameterBlock(ShaderParameterBlock.Layout layout) {
+		ShaderParameterBlock block = registerParameter(new ShaderParameterBlock(layout));
+		blocks.add(block);
+		return block;
+	}
+
 	protected <T extends ShaderParameter> T registerParameter(T parameter) {
+		for (int i = 0; i < blocks.size; i++) {
+			ShaderParameterBlock block = blocks.get(i);
+			if (block.contains(parameter.name)) {
+				block.attach(parameter);
+				return parameter;
+			}
+		}
+
 		parameters.add(parameter);
-		rebindParameter(parameter);
+		parameter.resolveLocation(program);
+		if (deferredParameters)
+			markDirty(parameter);
+		else
+			rebindParameter(parameter);
 		parameter.listener = this.listener;
 		return parameter;
 	}
@@ -29,21 +29,98 @@ public abstract class ShaderParameter {
 
 	final String name;
 	ShaderParameterValueChangedListener listener;
+	boolean dirty = false;
+	int blockOffset = -1;
+	int version = 0;
+
+	private ShaderProgram program = null;
+	private int location = -1;
 
 	public ShaderParameter(String name) {
 		this.name = name;
 	}
 
 	/**
-	 * Applies this parameter to given ShaderProgram, using shader.setUniform*
-	 * and such.
+	 * Applies this parameter to given ShaderProgram. The uniform location is
+	 * resolved once for the given ShaderProgram then reused, nothing is
+	 * uploaded if the uniform is not active in the program.
+	 *
+	 * @param shader
+	 *            the ShaderProgram to apply this parameter to
+	 */
+	public void apply(ShaderProgram shader) {
+		int location = resolveLocation(shader);
+		if (location >= 0)
+			apply(shader, location);
+	}
+
+	/**
+	 * Applies this parameter to given ShaderProgram at given uniform location,
+	 * using shader.setUniform* and such.
 	 *
 	 * @param shader
 	 *            the ShaderProgram to apply this parameter to
+	 * @param location
+	 *            the location of the uniform in the ShaderProgram
+	 */
+	protected abstract void apply(ShaderProgram shader, int location);
+
+	/**
+	 * Resolves the location of this parameter's uniform in given
+	 * ShaderProgram. Location is cached until the ShaderProgram changes or
+	 * {@link #invalidate()} is called.
+	 *
+	 * @param shader
+	 *            the ShaderProgram to look the uniform up in
+	 * @return the uniform location, -1 if not active in the ShaderProgram
+	 */
+	int resolveLocation(ShaderProgram shader) {
+		if (this.program != shader) {
+			invalidate();
+			this.program = shader;
+			this.location = shader.fetchUniformLocation(name, false);
+		}
+		return this.location;
+	}
+
+	/**
+	 * Forgets the cached uniform location, it will be resolved again upon next
+	 * application.
+	 */
+	void invalidate() {
+		this.program = null;
+		this.location = -1;
+	}
+
+	/**
+	 * Makes sure the whole value is uploaded on next application.
+	 */
+	void markForUpload() {
+	}
+
+	/**
+	 * Gets the count of float components of this parameter when packed into a
+	 * ShaderParameterBlock.
+	 *
+	 * @return the component count, 0 if this parameter cannot be packed
+	 */
+	int getComponentCount() {
+		return 0;
+	}
+
+	/**
+	 * Writes this parameter's value into a ShaderParameterBlock's data.
+	 *
+	 * @param data
+	 *            the block data
+	 * @param offset
+	 *            the offset of this parameter in the block data
 	 */
-	public abstract void apply(ShaderProgram shader);
+	void pack(float[] data, int offset) {
+	}
 
 	protected final void valueChanged() {
+		version++;
 		if (listener != null)
 			listener.onValueChanged(this);
 	}
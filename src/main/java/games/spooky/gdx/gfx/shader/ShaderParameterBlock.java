@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import games.spooky.gdx.gfx.shader.ShaderParameter.ShaderParameterValueChangedListener;
+
+/**
+ * A ShaderParameter packing several float, Vector2, Vector3 and Color
+ * parameters into a single vec4 array uniform, so that they are all uploaded
+ * with a single GL call. Member parameters keep their usual API and simply
+ * write into their own slot of the block.
+ * <p>
+ * The shader has to declare the block as provided by
+ * {@link Layout#getDeclaration()}, which also defines accessor macros named
+ * after the member parameters.
+ */
+public class ShaderParameterBlock extends ShaderParameter {
+
+	private final Layout layout;
+	private final float[] data;
+
+	private final ShaderParameterValueChangedListener memberListener = new ShaderParameterValueChangedListener() {
+		@Override
+		public void onValueChanged(ShaderParameter parameter) {
+			parameter.pack(data, parameter.blockOffset);
+			valueChanged();
+		}
+	};
+
+	ShaderParameterBlock(Layout layout) {
+		super(layout.name);
+		this.layout = layout;
+		this.data = new float[layout.getVectorCount() * 4];
+	}
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Tells whether a parameter of given name belongs to this block.
+	 *
+	 * @param name
+	 *            the name of the parameter
+	 * @return true if this block holds a slot for given name, false otherwise
+	 */
+	public boolean contains(String name) {
+		return layout.offsets.containsKey(name);
+	}
+
+	void attach(ShaderParameter parameter) {
+		int components = layout.components.get(parameter.name, 0);
+		if (parameter.getComponentCount() != components)
+			throw new GdxRuntimeException("Parameter " + parameter.name + " does not fit its slot in block " + name);
+
+		parameter.blockOffset = layout.offsets.get(parameter.name, 0);
+		parameter.listener = memberListener;
+		parameter.pack(data, parameter.blockOffset);
+		valueChanged();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
+	 * graphics.glutils.ShaderProgram, int)
+	 */
+	@Override
+	protected void apply(ShaderProgram shader, int location) {
+		shader.setUniform4fv(location, data, 0, data.length);
+	}
+
+	/**
+	 * The layout of a ShaderParameterBlock. Members are packed in declaration
+	 * order std140-like: floats fill any component, Vector2 are aligned on
+	 * two components, Vector3 and Color start a new vec4. Declare layouts
+	 * statically, the GLSL declaration is needed before the ShaderProgram is
+	 * compiled.
+	 */
+	public static class Layout {
+
+		private static final String Components = "xyzw";
+
+		final String name;
+		final ObjectIntMap<String> offsets = new ObjectIntMap<String>();
+		final ObjectIntMap<String> components = new ObjectIntMap<String>();
+		private final Array<String> members = new Array<String>();
+
+		private int size = 0;
+
+		/**
+		 * Instantiates a new, empty, Layout.
+		 *
+		 * @param name
+		 *            the name of the vec4 array uniform
+		 */
+		public Layout(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Layout addFloat(String name) {
+			return add(name, 1);
+		}
+
+		public Layout addVector2(String name) {
+			return add(name, 2);
+		}
+
+		public Layout addVector3(String name) {
+			return add(name, 3);
+		}
+
+		public Layout addColor(String name) {
+			return add(name, 4);
+		}
+
+		/**
+		 * Gets the count of vec4 elements in the block.
+		 *
+		 * @return the length of the vec4 array uniform
+		 */
+		public int getVectorCount() {
+			return (size + 3) / 4;
+		}
+
+		/**
+		 * Gets the GLSL declaration of the block: the vec4 array uniform
+		 * itself, then one accessor macro per member. Insert it in your
+		 * shader in place of the members' uniform declarations.
+		 *
+		 * @return the GLSL declaration of the block
+		 */
+		public String getDeclaration() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("uniform vec4 ").append(name).append('[').append(getVectorCount()).append("];\n");
+			for (int i = 0; i < members.size; i++) {
+				String member = members.get(i);
+				int offset = offsets.get(member, 0);
+				int start = offset % 4;
+				builder.append("#define ").append(member).append(' ').append(name).append('[').append(offset / 4)
+						.append("].").append(Components, start, start + components.get(member, 0)).append('\n');
+			}
+			return builder.toString();
+		}
+
+		private Layout add(String name, int count) {
+			if (offsets.containsKey(name))
+				throw new GdxRuntimeException("Parameter " + name + " already declared in block " + this.name);
+
+			// Members never straddle two vec4
+			int alignment = count == 1 ? 1 : count == 2 ? 2 : 4;
+			int offset = (size + alignment - 1) / alignment * alignment;
+
+			offsets.put(name, offset);
+			components.put(name, count);
+			members.add(name);
+			size = offset + count;
+			return this;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+
+import games.spooky.gdx.gfx.CommonShaders;
+
+/**
+ * A tiny GLSL preprocessor resolving <code>#include "name"</code> directives
+ * against registered snippets. Each snippet is included at most once per
+ * shader. The <code>precision</code> snippet, holding
+ * {@link CommonShaders#Precision}, is always available.
+ */
+public class ShaderPreprocessor {
+
+	private static final String Include = "#include";
+
+	private final ObjectMap<String, String> snippets = new ObjectMap<String, String>();
+
+	public ShaderPreprocessor() {
+		super();
+		registerSnippet("precision", CommonShaders.Precision);
+	}
+
+	/**
+	 * Registers a snippet of GLSL code, replacing any former snippet of the
+	 * same name.
+	 *
+	 * @param name
+	 *            the name to include the snippet with
+	 * @param source
+	 *            the GLSL code of the snippet, may include other snippets
+	 */
+	public void registerSnippet(String name, String source) {
+		snippets.put(name, source);
+	}
+
+	public boolean hasSnippet(String name) {
+		return snippets.containsKey(name);
+	}
+
+	/**
+	 * Resolves all #include directives of given GLSL code.
+	 *
+	 * @param source
+	 *            the GLSL code to process
+	 * @return the GLSL code with snippets included
+	 */
+	public String process(String source) {
+		StringBuilder builder = new StringBuilder(source.length());
+		process(source, builder, new ObjectSet<String>());
+		return builder.toString();
+	}
+
+	private void process(String source, StringBuilder builder, ObjectSet<String> included) {
+		int start = 0;
+		int length = source.length();
+		while (start < length) {
+			int end = source.indexOf('\n', start);
+			if (end == -1)
+				end = length;
+
+			String line = source.substring(start, end).trim();
+			if (line.startsWith(Include)) {
+				String name = unquote(line.substring(Include.length()).trim());
+				String snippet = snippets.get(name);
+				if (snippet == null)
+					throw new GdxRuntimeException("Unknown shader snippet: " + name);
+				if (included.add(name)) {
+					process(snippet, builder, included);
+					builder.append('\n');
+				}
+			} else {
+				builder.append(source, start, end);
+				if (end < length)
+					builder.append('\n');
+			}
+
+			start = end + 1;
+		}
+	}
+
+	private static String unquote(String name) {
+		int length = name.length();
+		if (length >= 2) {
+			char first = name.charAt(0);
+			char last = name.charAt(length - 1);
+			if ((first == '"' && last == '"') || (first == '<' && last == '>'))
+				return name.substring(1, length - 1);
+		}
+		return name;
+	}
+
+	/**
+	 * Builds the GLSL defines for given set of symbols. Symbols may be given
+	 * a value with the NAME=VALUE syntax.
+	 *
+	 * @param symbols
+	 *            the symbols to define
+	 * @return the GLSL code defining all symbols, one per line
+	 */
+	public static String defines(String... symbols) {
+		StringBuilder builder = new StringBuilder();
+		for (String symbol : symbols) {
+			int equals = symbol.indexOf('=');
+			builder.append("#define ");
+			if (equals == -1)
+				builder.append(symbol);
+			else
+				builder.append(symbol, 0, equals).append(' ').append(symbol, equals + 1, symbol.length());
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+}
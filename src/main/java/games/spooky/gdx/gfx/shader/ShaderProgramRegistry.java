@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Shares ShaderPrograms among effects. A ShaderProgram is compiled once per
+ * set of sources and defines, then reference counted: it is only disposed
+ * once every effect which acquired it has released it.
+ */
+public final class ShaderProgramRegistry {
+
+	private static final ObjectMap<Key, Entry> entries = new ObjectMap<Key, Entry>();
+	private static final IdentityMap<ShaderProgram, Entry> programs = new IdentityMap<ShaderProgram, Entry>();
+
+	private ShaderProgramRegistry() {
+	}
+
+	/**
+	 * Acquires the ShaderProgram built from given sources, compiling it if
+	 * needed. Must be matched by a call to {@link #release(ShaderProgram)}.
+	 *
+	 * @param vertex
+	 *            the text for vertex shader
+	 * @param fragment
+	 *            the text for fragment shader
+	 * @return the shared ShaderProgram
+	 */
+	public static ShaderProgram acquire(String vertex, String fragment) {
+		return acquire(vertex, fragment, "");
+	}
+
+	/**
+	 * Acquires the ShaderProgram built from given sources and defines,
+	 * compiling it if needed. Must be matched by a call to
+	 * {@link #release(ShaderProgram)}.
+	 *
+	 * @param vertex
+	 *            the text for vertex shader
+	 * @param fragment
+	 *            the text for fragment shader
+	 * @param defines
+	 *            GLSL code inserted at the beginning of both shaders, after
+	 *            any #version directive
+	 * @return the shared ShaderProgram
+	 */
+	public static synchronized ShaderProgram acquire(String vertex, String fragment, String defines) {
+		Key key = new Key(vertex, fragment, defines);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			ShaderProgram program = new ShaderProgram(insert(defines, vertex), insert(defines, fragment));
+			entry = new Entry(key, program);
+			entries.put(key, entry);
+			programs.put(program, entry);
+		}
+		entry.references++;
+		return entry.program;
+	}
+
+	/**
+	 * Releases a ShaderProgram previously acquired. It is disposed when no
+	 * longer referenced.
+	 *
+	 * @param program
+	 *            the ShaderProgram to release
+	 */
+	public static synchronized void release(ShaderProgram program) {
+		Entry entry = programs.get(program);
+		if (entry == null)
+			throw new GdxRuntimeException("ShaderProgram was not acquired from registry");
+
+		if (--entry.references <= 0) {
+			entries.remove(entry.key);
+			programs.remove(program);
+			program.dispose();
+		}
+	}
+
+	/**
+	 * Gets the count of distinct ShaderPrograms currently held.
+	 *
+	 * @return the count of ShaderPrograms
+	 */
+	public static synchronized int getProgramCount() {
+		return programs.size;
+	}
+
+	/**
+	 * Gets the count of references on given ShaderProgram.
+	 *
+	 * @param program
+	 *            the ShaderProgram
+	 * @return the count of references, 0 if not held by this registry
+	 */
+	public static synchronized int getReferenceCount(ShaderProgram program) {
+		Entry entry = programs.get(program);
+		return entry == null ? 0 : entry.references;
+	}
+
+	private static String insert(String defines, String source) {
+		if (defines.length() == 0)
+			return source;
+
+		// #version has to stay first
+		if (source.startsWith("#version")) {
+			int index = source.indexOf('\n') + 1;
+			if (index > 0)
+				return source.substring(0, index) + defines + '\n' + source.substring(index);
+		}
+		return defines + '\n' + source;
+	}
+
+	private static class Entry {
+		final Key key;
+		final ShaderProgram program;
+		int references = 0;
+
+		Entry(Key key, ShaderProgram program) {
+			this.key = key;
+			this.program = program;
+		}
+	}
+
+	private static class Key {
+		final String vertex;
+		final String fragment;
+		final String defines;
+		final int hash;
+
+		Key(String vertex, String fragment, String defines) {
+			this.vertex = vertex;
+			this.fragment = fragment;
+			this.defines = defines;
+			this.hash = 31 * (31 * vertex.hashCode() + fragment.hashCode()) + defines.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && vertex.equals(other.vertex) && fragment.equals(other.fragment)
+					&& defines.equals(other.defines);
+		}
+	}
+}
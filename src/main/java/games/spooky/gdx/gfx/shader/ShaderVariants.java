@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * A set of permutations of the same shader, each compiled with its own set of
+ * #define symbols. Variants are compiled on first request then kept until
+ * disposal. ShaderPrograms come from the ShaderProgramRegistry, so
+ * ShaderVariants built from the same sources share them.
+ * <p>
+ * Permutations let you strip branches and unused taps out of shaders instead
+ * of testing uniforms for every pixel.
+ */
+public class ShaderVariants implements Disposable {
+
+	private final String vertex;
+	private final String fragment;
+	private final ObjectMap<String, ShaderProgram> programs = new ObjectMap<String, ShaderProgram>();
+
+	/**
+	 * Instantiates a new ShaderVariants, resolving includes with a default
+	 * ShaderPreprocessor.
+	 *
+	 * @param vertex
+	 *            the text for vertex shader
+	 * @param fragment
+	 *            the text for fragment shader
+	 */
+	public ShaderVariants(String vertex, String fragment) {
+		this(new ShaderPreprocessor(), vertex, fragment);
+	}
+
+	/**
+	 * Instantiates a new ShaderVariants.
+	 *
+	 * @param preprocessor
+	 *            the ShaderPreprocessor to resolve includes with
+	 * @param vertex
+	 *            the text for vertex shader
+	 * @param fragment
+	 *            the text for fragment shader
+	 */
+	public ShaderVariants(ShaderPreprocessor preprocessor, String vertex, String fragment) {
+		this.vertex = preprocessor.process(vertex);
+		this.fragment = preprocessor.process(fragment);
+	}
+
+	/**
+	 * Gets the variant compiled with given symbols defined, compiling it if
+	 * needed. Order of symbols does not matter.
+	 *
+	 * @param symbols
+	 *            the symbols to define, possibly with a value (NAME=VALUE)
+	 * @return the ShaderProgram for this variant
+	 */
+	public ShaderProgram get(String... symbols) {
+		if (symbols.length > 1) {
+			symbols = symbols.clone();
+			Arrays.sort(symbols);
+		}
+		String defines = ShaderPreprocessor.defines(symbols);
+		ShaderProgram program = programs.get(defines);
+		if (program == null) {
+			program = ShaderProgramRegistry.acquire(vertex, fragment, defines);
+			programs.put(defines, program);
+		}
+		return program;
+	}
+
+	/**
+	 * Gets the count of variants compiled so far.
+	 *
+	 * @return the count of variants
+	 */
+	public int size() {
+		return programs.size;
+	}
+
+	@Override
+	public void dispose() {
+		for (ShaderProgram program : programs.values())
+			ShaderProgramRegistry.release(program);
+		programs.clear();
+	}
+}
@@ -33,6 +33,8 @@ import com.badlogic.gdx.graphics.glutils.ShaderProgram;
  */
 public class SinglePassShaderEffect extends ShaderEffect {
 
+	private final TextureShaderParameter input;
+
 	/**
 	 * Instantiates a new SinglePassShaderEffect. The effect does NOT own
 	 * shader, so it will not dispose it!
@@ -44,12 +46,24 @@ public class SinglePassShaderEffect extends ShaderEffect {
 		super(program);
 		if (!program.isCompiled())
 			System.err.println(program.getLog());
-		registerParameter("u_texture0", u_texture0);
+		input = registerTexture("u_texture0");
 	}
 
 	@Override
 	protected void actualRender(Texture source) {
-		source.bind(u_texture0);
+		input.setValue(source);
+
+		// Only sample the part of the source actually rendered to
+		setUVScale(source);
 		super.actualRender(source);
 	}
+
+	/**
+	 * Source texture is bound through GLState. Subclasses overriding
+	 * actualRender() to bind textures by themselves must return false.
+	 */
+	@Override
+	protected boolean isTextureTracked() {
+		return true;
+	}
 }
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx.shader;
+
+import com.badlogic.gdx.graphics.GLTexture;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+
+import games.spooky.gdx.gfx.GLState;
+
+/**
+ * A sampler parameter, bound to a texture unit assigned by its ShaderEffect.
+ * The uniform itself (the unit) is only uploaded once, while the texture is
+ * bound upon each rendering through GLState, hence at no cost when
+ * unchanged.
+ */
+public class TextureShaderParameter extends ShaderParameter {
+
+	private final int unit;
+
+	private GLTexture value;
+
+	TextureShaderParameter(String name, int unit) {
+		super(name);
+		this.unit = unit;
+	}
+
+	/**
+	 * Gets the texture unit assigned to this parameter.
+	 *
+	 * @return the texture unit, starting from 0
+	 */
+	public int getUnit() {
+		return unit;
+	}
+
+	public GLTexture getValue() {
+		return value;
+	}
+
+	/**
+	 * Sets the texture of this parameter, to be bound on next rendering. No
+	 * event is triggered as the uniform itself does not change.
+	 *
+	 * @param value
+	 *            the new texture
+	 * @return this shader parameter, for chaining
+	 */
+	public TextureShaderParameter setValue(GLTexture value) {
+		this.value = value;
+		return this;
+	}
+
+	/**
+	 * Binds texture to its unit, if any texture set.
+	 */
+	void bind() {
+		if (value != null)
+			GLState.bindTexture(value, unit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
+	 * graphics.glutils.ShaderProgram, int)
+	 */
+	@Override
+	protected void apply(ShaderProgram shader, int location) {
+		shader.setUniformi(location, unit);
+	}
+
+}
@@ -26,36 +26,29 @@ package games.spooky.gdx.gfx.shader;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Vector2;
 
-public class Vector2ArrayShaderParameter extends ShaderParameter {
+public class Vector2ArrayShaderParameter extends ArrayShaderParameter {
 
-	private int length = -1;
-	private float[] value;
-	private Vector2[] tmp;
+	private final View view = new View();
 
 	Vector2ArrayShaderParameter(String name) {
-		super(name);
+		super(name, 2);
 	}
 
-	public Vector2[] getValue() {
-		if (tmp == null) {
-			if (this.length == -1)
-				return null;
-			int count = length / 2;
-			tmp = new Vector2[count];
-			for (int i = 0; i < count; i++)
-				tmp[i] = new Vector2(value[2 * i], value[2 * i + 1]);
-		} else {
-			int count = length / 2;
-			for (int i = 0; i < count; i++)
-				tmp[i].set(value[2 * i], value[2 * i + 1]);
-		}
-		return tmp;
+	/**
+	 * Gets a read-only view on the value of this Vector2[] parameter. The view
+	 * is always the same object and reflects later changes.
+	 *
+	 * @return the view on the value, null if no value was ever set
+	 */
+	public View getValue() {
+		return this.length == -1 ? null : view;
 	}
 
 	/**
 	 * Sets the value of this Vector2[] parameter. Event is triggered only if
 	 * new Vector2[] is different from former Vector2[], tested with array
-	 * length and coordinates matching.
+	 * length and coordinates matching. Only the range of vectors actually
+	 * changed will be uploaded.
 	 *
 	 * @param value
 	 *            the new Vector2[] value
@@ -74,50 +67,96 @@ public class Vector2ArrayShaderParameter extends ShaderParameter {
 				}
 			}
 
-			valueChanged();
+			elementsChanged(0, value.length);
 
 		} else if (value.length * 2 <= this.length) {
 
-			boolean changed = false; // Array equality check
+			// Array equality check, keeping track of changed range
+			int start = -1;
+			int end = -1;
 
 			for (int i = 0; i < value.length; i++) {
 				Vector2 vector = value[i];
 				if (vector == null) {
 					// If null, say we don't change a thing
-				} else {
-					float x = vector.x;
-					float y = vector.y;
-
-					int index = 2 * i;
-					if (x != this.value[index]) {
-						this.value[index] = x;
-						changed = true;
-					}
-
-					index += 1;
-					if (y != this.value[index]) {
-						this.value[index] = y;
-						changed = true;
-					}
+				} else if (update(i, vector.x, vector.y)) {
+					if (start == -1)
+						start = i;
+					end = i;
 				}
 			}
 
-			if (changed)
-				valueChanged();
+			if (start != -1)
+				elementsChanged(start, end + 1);
 		}
 		return this;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	/**
+	 * Sets a single vector of this Vector2[] parameter. Event is triggered
+	 * only if new coordinates are different from former coordinates.
+	 *
+	 * @param index
+	 *            the index of the vector to set
+	 * @param x
+	 *            the x-coordinate of the new vector
+	 * @param y
+	 *            the y-coordinate of the new vector
+	 * @return this shader parameter, for chaining
 	 */
+	public Vector2ArrayShaderParameter set(int index, float x, float y) {
+		if (update(index, x, y))
+			elementsChanged(index, index + 1);
+		return this;
+	}
+
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniform2fv(name, value, 0, length);
+	void upload(ShaderProgram shader, int location, int offset, int count) {
+		shader.setUniform2fv(location, value, offset, count);
+	}
+
+	private boolean update(int index, float x, float y) {
+		int offset = 2 * index;
+		if (this.value[offset] == x && this.value[offset + 1] == y)
+			return false;
+		this.value[offset] = x;
+		this.value[offset + 1] = y;
+		return true;
+	}
+
+	/**
+	 * A read-only view on the value of a Vector2ArrayShaderParameter.
+	 */
+	public final class View {
+
+		private View() {
+			super();
+		}
+
+		public int size() {
+			return Vector2ArrayShaderParameter.this.size();
+		}
+
+		public float getX(int index) {
+			return value[2 * index];
+		}
+
+		public float getY(int index) {
+			return value[2 * index + 1];
+		}
+
+		/**
+		 * Copies the vector at given index into given Vector2.
+		 *
+		 * @param index
+		 *            the index of the vector
+		 * @param out
+		 *            the Vector2 to copy coordinates into
+		 * @return the out Vector2, for chaining
+		 */
+		public Vector2 get(int index, Vector2 out) {
+			return out.set(value[2 * index], value[2 * index + 1]);
+		}
 	}
 
 }
@@ -26,36 +26,29 @@ package games.spooky.gdx.gfx.shader;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Vector3;
 
-public class Vector3ArrayShaderParameter extends ShaderParameter {
+public class Vector3ArrayShaderParameter extends ArrayShaderParameter {
 
-	private int length = -1;
-	private float[] value;
-	private Vector3[] tmp;
+	private final View view = new View();
 
 	Vector3ArrayShaderParameter(String name) {
-		super(name);
+		super(name, 3);
 	}
 
-	public Vector3[] getValue() {
-		if (tmp == null) {
-			if (this.length == -1)
-				return null;
-			int count = length / 3;
-			tmp = new Vector3[count];
-			for (int i = 0; i < count; i++)
-				tmp[i] = new Vector3(value[3 * i], value[3 * i + 1], value[3 * i + 2]);
-		} else {
-			int count = length / 3;
-			for (int i = 0; i < count; i++)
-				tmp[i].set(value[3 * i], value[3 * i + 1], value[3 * i + 2]);
-		}
-		return tmp;
+	/**
+	 * Gets a read-only view on the value of this Vector3[] parameter. The view
+	 * is always the same object and reflects later changes.
+	 *
+	 * @return the view on the value, null if no value was ever set
+	 */
+	public View getValue() {
+		return this.length == -1 ? null : view;
 	}
 
 	/**
 	 * Sets the value of this Vector3[] parameter. Event is triggered only if
 	 * new Vector3[] is different from former Vector3[], tested with array
-	 * length and coordinates matching.
+	 * length and coordinates matching. Only the range of vectors actually
+	 * changed will be uploaded.
 	 *
 	 * @param value
 	 *            the new Vector3[] value
@@ -73,10 +66,12 @@ public class Vector3ArrayShaderParameter extends ShaderParameter {
 					this.value[3 * i + 2] = vector.z;
 				}
 			}
-			valueChanged();
+			elementsChanged(0, value.length);
 		} else if (value.length * 3 <= this.length) {
 
-			boolean changed = false; // Array equality check
+			// Array equality check, keeping track of changed range
+			int start = -1;
+			int end = -1;
 
 			for (int i = 0; i < value.length; i++) {
 				Vector3 vector = value[i];
@@ -85,48 +80,91 @@ public class Vector3ArrayShaderParameter extends ShaderParameter {
 
 					// If null, say we don't change a thing
 
-				} else {
-
-					float x = vector.x;
-					float y = vector.y;
-					float z = vector.z;
-
-					int index = 3 * i;
-					if (x != this.value[index]) {
-						this.value[index] = x;
-						changed = true;
-					}
-
-					index += 1;
-					if (y != this.value[index]) {
-						this.value[index] = y;
-						changed = true;
-					}
-
-					index += 1;
-					if (z != this.value[index]) {
-						this.value[index] = z;
-						changed = true;
-					}
+				} else if (update(i, vector.x, vector.y, vector.z)) {
+					if (start == -1)
+						start = i;
+					end = i;
 				}
 			}
 
-			if (changed)
-				valueChanged();
+			if (start != -1)
+				elementsChanged(start, end + 1);
 		}
 		return this;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	/**
+	 * Sets a single vector of this Vector3[] parameter. Event is triggered
+	 * only if new coordinates are different from former coordinates.
+	 *
+	 * @param index
+	 *            the index of the vector to set
+	 * @param x
+	 *            the x-coordinate of the new vector
+	 * @param y
+	 *            the y-coordinate of the new vector
+	 * @param z
+	 *            the z-coordinate of the new vector
+	 * @return this shader parameter, for chaining
 	 */
+	public Vector3ArrayShaderParameter set(int index, float x, float y, float z) {
+		if (update(index, x, y, z))
+			elementsChanged(index, index + 1);
+		return this;
+	}
+
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniform3fv(name, value, 0, length);
+	void upload(ShaderProgram shader, int location, int offset, int count) {
+		shader.setUniform3fv(location, value, offset, count);
+	}
+
+	private boolean update(int index, float x, float y, float z) {
+		int offset = 3 * index;
+		if (this.value[offset] == x && this.value[offset + 1] == y && this.value[offset + 2] == z)
+			return false;
+		this.value[offset] = x;
+		this.value[offset + 1] = y;
+		this.value[offset + 2] = z;
+		return true;
+	}
+
+	/**
+	 * A read-only view on the value of a Vector3ArrayShaderParameter.
+	 */
+	public final class View {
+
+		private View() {
+			super();
+		}
+
+		public int size() {
+			return Vector3ArrayShaderParameter.this.size();
+		}
+
+		public float getX(int index) {
+			return value[3 * index];
+		}
+
+		public float getY(int index) {
+			return value[3 * index + 1];
+		}
+
+		public float getZ(int index) {
+			return value[3 * index + 2];
+		}
+
+		/**
+		 * Copies the vector at given index into given Vector3.
+		 *
+		 * @param index
+		 *            the index of the vector
+		 * @param out
+		 *            the Vector3 to copy coordinates into
+		 * @return the out Vector3, for chaining
+		 */
+		public Vector3 get(int index, Vector3 out) {
+			return out.set(value[3 * index], value[3 * index + 1], value[3 * index + 2]);
+		}
 	}
 
 }
@@ -59,11 +59,23 @@ public class Vector3ShaderParameter extends ShaderParameter {
 	 * 
 	 * @see
 	 * games.spooky.gdx.gfx.shader.ShaderParameter#apply(com.badlogic.gdx.
-	 * graphics.glutils.ShaderProgram)
+	 * graphics.glutils.ShaderProgram, int)
 	 */
 	@Override
-	public void apply(ShaderProgram shader) {
-		shader.setUniformf(name, value);
+	protected void apply(ShaderProgram shader, int location) {
+		shader.setUniformf(location, value);
+	}
+
+	@Override
+	int getComponentCount() {
+		return 3;
+	}
+
+	@Override
+	void pack(float[] data, int offset) {
+		data[offset] = value.x;
+		data[offset + 1] = value.y;
+		data[offset + 2] = value.z;
 	}
 
 }
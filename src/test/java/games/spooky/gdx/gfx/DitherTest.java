@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-2021 Spooky Games
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package games.spooky.gdx.gfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+public class DitherTest {
+
+	@BeforeClass
+	public static void loadNatives() {
+		// Pixmaps need gdx natives, but no OpenGL context
+		GdxNativesLoader.load();
+	}
+
+	@Test
+	public void patternIsPermutationOfThresholds() {
+		int cells = Dither.PatternSize * Dither.PatternSize;
+		boolean[] found = new boolean[cells];
+		float sum = 0f;
+
+		Pixmap pattern = Dither.createPattern();
+		try {
+			for (int y = 0; y < Dither.PatternSize; y++) {
+				for (int x = 0; x < Dither.PatternSize; x++) {
+					int value = pattern.getPixel(x, y) >>> 24;
+					int index = value * cells / 255;
+					assertFalse("Threshold " + index + " found twice", found[index]);
+					found[index] = true;
+					sum += value / 255f;
+				}
+			}
+		} finally {
+			pattern.dispose();
+		}
+
+		assertEquals(0.5f, sum / cells, 1f / 255f);
+	}
+
+	@Test
+	public void quantumMatchesFormatPrecision() {
+		// RGBA8888
+		assertEquals(1f / 255f, Dither.quantum(8), 0f);
+		// RGB565
+		assertEquals(1f / 31f, Dither.quantum(5), 0f);
+		assertEquals(1f / 63f, Dither.quantum(6), 0f);
+		// RGBA4444
+		assertEquals(1f / 15f, Dither.quantum(4), 0f);
+		// Missing channel, such as alpha of RGB565
+		assertEquals(0f, Dither.quantum(0), 0f);
+	}
+}
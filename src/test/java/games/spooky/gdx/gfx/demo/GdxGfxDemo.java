@@ -67,6 +67,7 @@ import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 
+import games.spooky.gdx.gfx.ContextRecovery;
 import games.spooky.gdx.gfx.Effect;
 import games.spooky.gdx.gfx.MultiTemporalVisualEffect;
 import games.spooky.gdx.gfx.demo.fx.Greyscale;
@@ -255,17 +256,18 @@ public class GdxGfxDemo implements ApplicationListener {
 		
 		/* Draw */
 		
+		// Backbuffer, letterbox included
 		Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-
-		effect.capture();
 		
-		Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
+		effect.beginFrame();
+		
+		// Capture buffer, if any
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 		
 		stage.draw();
 		
-		effect.render(effect.endCapture(), null);
+		effect.endFrame();
 	}
 
 	@Override
@@ -273,6 +275,7 @@ public class GdxGfxDemo implements ApplicationListener {
 		Viewport viewport = stage.getViewport();
 		viewport.update(width, height, true);
 		viewportRectangle.set(viewport.getScreenX(), viewport.getScreenY(), viewport.getScreenWidth(), viewport.getScreenHeight());
+		effect.resize(width, height);
 	}
 
 	@Override
@@ -281,7 +284,7 @@ public class GdxGfxDemo implements ApplicationListener {
 
 	@Override
 	public void resume() {
-		effect.rebind();
+		ContextRecovery.contextLost();
 	}
 
 	@Override
@@ -23,42 +23,21 @@
  */
 package games.spooky.gdx.gfx.demo.fx;
 
-import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import games.spooky.gdx.gfx.CommonShaders;
-import games.spooky.gdx.gfx.shader.SinglePassShaderEffect;
+import games.spooky.gdx.gfx.shader.PointwiseShaderEffect;
 
-public class Greyscale extends SinglePassShaderEffect {
+public class Greyscale extends PointwiseShaderEffect {
 
-	static final String Greyscale = "#ifdef GL_ES\n" +
-			"#define PRECISION mediump\n" +
-			"precision PRECISION float;\n" +
-			"#else\n" +
-			"#define PRECISION\n" +
-			"#endif\n" +
-			"\n" +
-			"varying PRECISION vec2 v_texCoords;\n" +
-			"uniform sampler2D u_texture0;\n" +
-			"\n" +
-			"void main()\n" +
-			"{\n" +
+	static final String Greyscale = "" +
 			"// Greyscale coeffs: 0.2989, 0.5870, 0.1140\n" +
 			"// http://stackoverflow.com/questions/687261/converting-rgb-to-grayscale-intensity\n" +
 			"\n" +
-			"vec4 c = texture2D(u_texture0, v_texCoords);\n" +
+			"vec4 transform(vec4 c)\n" +
+			"{\n" +
 			"float value = c.r * 0.2989 + c.g * 0.5870 + c.b * 0.1140;\n" +
-			"gl_FragColor.r = value;\n" +
-			"gl_FragColor.g = value;\n" +
-			"gl_FragColor.b = value;\n" +
-			"gl_FragColor.a = c.a;\n" +
+			"return vec4(value, value, value, c.a);\n" +
 			"}";
 	
 	public Greyscale() {
-		super(new ShaderProgram(CommonShaders.Screenspace, Greyscale));
-	}
-	
-	@Override
-	public void dispose() {
-		super.dispose();
-		program.dispose();
+		super(Greyscale);
 	}
 }
@@ -30,35 +30,69 @@ import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.utils.Disposable;
-import games.spooky.gdx.gfx.BouncingBuffer;
 import games.spooky.gdx.gfx.CommonShaders;
-import games.spooky.gdx.gfx.VisualEffect;
+import games.spooky.gdx.gfx.FrameBufferStack;
+import games.spooky.gdx.gfx.IdentityAwareEffect;
+import games.spooky.gdx.gfx.RenderGraph;
+import games.spooky.gdx.gfx.RenderGraph.EffectNode;
+import games.spooky.gdx.gfx.RenderGraph.Node;
+import games.spooky.gdx.gfx.RenderGraph.Target;
 import games.spooky.gdx.gfx.shader.ColorShaderParameter;
 import games.spooky.gdx.gfx.shader.FloatShaderParameter;
 import games.spooky.gdx.gfx.shader.OwnedSinglePassShaderEffect;
+import games.spooky.gdx.gfx.shader.TextureShaderParameter;
 import games.spooky.gdx.gfx.shader.Vector2ShaderParameter;
 
-public abstract class Outline implements VisualEffect, Disposable {
+public abstract class Outline implements IdentityAwareEffect, Disposable {
 
-	private BouncingBuffer buffer;
+	private RenderGraph graph;
 
 	private OutlineFilter filter;
 	private Superimpose superimpose;
 	
 	public Outline (int width, int height, float viewportWidth, float viewportHeight) {
-		buffer = new BouncingBuffer(Format.RGBA8888, width, height, false);
-
 		superimpose = new Superimpose();
 
 		filter = new OutlineFilter();
 		filter.setViewportInverse(1f / viewportWidth, 1f / viewportHeight);
+
+		graph = new RenderGraph();
+		final Target outlined = graph.createTarget(Format.RGBA8888, width, height, false);
+		final Target outlines = graph.createTarget(Format.RGBA8888, width, height, false);
+
+		// Draw outlined to buffer
+		graph.addNode(new Node() {
+			@Override
+			protected void render(RenderGraph graph, FrameBuffer output) {
+				FrameBufferStack.begin(output);
+				Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
+				Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+				renderOutlined();
+				FrameBufferStack.end(output);
+			}
+		}).writes(outlined);
+
+		graph.addNode(new EffectNode(filter, outlined)).writes(outlines);
+
+		// mix original scene and outlines
+		graph.addNode(new Node() {
+			@Override
+			protected void render(RenderGraph graph, FrameBuffer output) {
+				superimpose.setAdditionalInput(graph.getTexture(outlines));
+				superimpose.render(graph.getSource(), output);
+			}
+			@Override
+			public void rebind() {
+				superimpose.rebind();
+			}
+		}).reads(outlines);
 	}
 
 	@Override
 	public void dispose () {
 		superimpose.dispose();
 		filter.dispose();
-		buffer.dispose();
+		graph.dispose();
 	}
 
 	public float getThickness() {
@@ -78,30 +112,18 @@ public abstract class Outline implements VisualEffect, Disposable {
 	}
 
 	@Override
-	public void render(Texture source, FrameBuffer destination) {
-
-		// Draw outlined to buffer
-		buffer.getCurrentTexture().bind(0);
-		buffer.begin();
-		
-		Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
-		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		renderOutlined();
-		
-		buffer.end();
-
-		filter.render(buffer.getResultTexture(), buffer.getCurrentBuffer());
+	public boolean isIdentity() {
+		return filter.getThickness() == 0f;
+	}
 
-		// mix original scene and outlines
-		superimpose.setAdditionalInput(buffer.getResultTexture());
-		superimpose.render(source, destination);
+	@Override
+	public void render(Texture source, FrameBuffer destination) {
+		graph.render(source, destination);
 	}
 
 	@Override
 	public void rebind () {
-		buffer.rebind();
-		superimpose.rebind();
-		filter.rebind();
+		graph.rebind();
 	}
 
 	public abstract void renderOutlined();
@@ -197,33 +219,29 @@ public abstract class Outline implements VisualEffect, Disposable {
 				"\n" +
 				"\tuniform PRECISION sampler2D u_texture0;\n" +
 				"\tuniform PRECISION sampler2D u_texture1;\n" +
+				"\tuniform vec2 u_uvScale;\n" +
 				"\n" +
 				"\tvarying vec2 v_texCoords;\n" +
 				"\n" +
 				"\tvoid main()\n" +
 				"\t{\n" +
 				"\t\tvec4 src1 = texture2D(u_texture0, v_texCoords);\n" +
-				"\t\tvec4 src2 = texture2D(u_texture1, v_texCoords);\n" +
+				"\t\t// Outlines are rendered to the whole of u_texture1, unlike source\n" +
+				"\t\tvec4 src2 = texture2D(u_texture1, v_texCoords / u_uvScale);\n" +
 				"\n" +
 				"\t\tgl_FragColor = src1 * (1.0 - src2) + src2;\n" +
 				"\t}";
 
-		private Texture inputTexture2 = null;
+		private final TextureShaderParameter additionalInput;
 
 		public Superimpose() {
 			super(CommonShaders.Screenspace, Superimpose);
 
-			registerParameter("u_texture1", u_texture1);
+			additionalInput = registerTexture("u_texture1");
 		}
 
 		public void setAdditionalInput(Texture texture) {
-			this.inputTexture2 = texture;
-		}
-
-		@Override
-		protected void actualRender(Texture source) {
-			inputTexture2.bind(u_texture1);
-			super.actualRender(source);
+			this.additionalInput.setValue(texture);
 		}
 	}
 }
@@ -23,32 +23,21 @@
  */
 package games.spooky.gdx.gfx.demo.fx;
 
-import games.spooky.gdx.gfx.CommonShaders;
-import games.spooky.gdx.gfx.shader.OwnedSinglePassShaderEffect;
+import games.spooky.gdx.gfx.shader.PointwiseShaderEffect;
 
-public class Sepia extends OwnedSinglePassShaderEffect {
+public class Sepia extends PointwiseShaderEffect {
 
-	static final String Sepia = "\n" +
-			"#ifdef GL_ES\n" +
-			"precision lowp float;\n" +
-			"#define MED mediump\n" +
-			"#else\n" +
-			"#define MED\n" +
-			"#endif\n" +
-			"\n" +
-			"varying MED vec2 v_texCoords;\n" +
-			"uniform sampler2D u_texture0;\n" +
-			"\n" +
-			"void main()\n" +
+	static final String Sepia = "" +
+			"vec4 transform(vec4 c)\n" +
 			"{\n" +
-			"vec4 c = texture2D(u_texture0, v_texCoords);\n" +
-			"gl_FragColor.r = (c.r * 0.393) + (c.g * 0.769) + (c.b * 0.189);\n" +
-			"gl_FragColor.g = (c.r * 0.349) + (c.g * 0.686) + (c.b * 0.168);\n" +
-			"gl_FragColor.b = (c.r * 0.272) + (c.g * 0.534) + (c.b * 0.131);\n" +
-			"gl_FragColor.a = c.a;\n" +
+			"return vec4(\n" +
+			"	(c.r * 0.393) + (c.g * 0.769) + (c.b * 0.189),\n" +
+			"	(c.r * 0.349) + (c.g * 0.686) + (c.b * 0.168),\n" +
+			"	(c.r * 0.272) + (c.g * 0.534) + (c.b * 0.131),\n" +
+			"	c.a);\n" +
 			"}";
 	
 	public Sepia() {
-		super(CommonShaders.Screenspace, Sepia);
+		super(Sepia);
 	}
 }
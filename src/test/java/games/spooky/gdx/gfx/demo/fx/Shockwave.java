@@ -30,46 +30,54 @@ import com.badlogic.gdx.math.Vector3;
 import games.spooky.gdx.gfx.CommonShaders;
 import games.spooky.gdx.gfx.TemporalEffect;
 import games.spooky.gdx.gfx.shader.FloatShaderParameter;
-import games.spooky.gdx.gfx.shader.OwnedSinglePassShaderEffect;
+import games.spooky.gdx.gfx.shader.ShaderParameterBlock;
+import games.spooky.gdx.gfx.shader.ShaderVariants;
+import games.spooky.gdx.gfx.shader.SinglePassShaderEffect;
 import games.spooky.gdx.gfx.shader.Vector2ShaderParameter;
 
-public class Shockwave extends OwnedSinglePassShaderEffect implements TemporalEffect  {
+public class Shockwave extends SinglePassShaderEffect implements TemporalEffect  {
+
+	// All float parameters packed into a single uniform
+	static final ShaderParameterBlock.Layout Parameters = new ShaderParameterBlock.Layout("u_shockwave")
+			.addVector2("u_center")  // Shock position, normalized 0.0 to 1.0
+			.addFloat("u_time")      // Effect elapsed time, normalized 0.0 to 1.0
+			.addFloat("u_diffusion")
+			.addFloat("u_diffusionp")
+			.addFloat("u_thickness");
 
 	// https://github.com/mattdesl/kami-demos/tree/master/src/shockwave
-	static final String Shockwave = "#ifdef GL_ES\n" +
-			"    #define PRECISION mediump\n" +
-			"    #define LOWP lowp\n" +
-			"    precision PRECISION float;\n" +
-			"#else\n" +
-			"    #define PRECISION\n" +
-			"    #define LOWP \n" +
-			"#endif\n" +
+	static final String Shockwave = "#include \"precision\"\n" +
 			"\n" +
 			"uniform sampler2D u_texture0;\n" +
+			"uniform vec2 u_uvScale;\n" +
 			"\n" +
-			"uniform vec2 u_center;      // Shock position, normalized 0.0 to 1.0\n" +
-			"uniform float u_time;       // Effect elapsed time, normalized 0.0 to 1.0\n" +
-			"uniform float u_diffusion;\n" +
-			"uniform float u_diffusionp;\n" +
-			"uniform float u_thickness;\n" +
+			Parameters.getDeclaration() +
 			"\n" +
 			"varying vec2 v_texCoords;\n" +
 			"\n" +
 			"void main() {\n" +
-			"    vec2 uv = v_texCoords.xy;\n" +
+			"    // Screen position, source may be a sub-rectangle of a larger texture\n" +
+			"    vec2 uv = v_texCoords.xy / u_uvScale;\n" +
 			"    vec2 texCoord = uv;\n" +
 			"    float dist = distance(uv, u_center);\n" +
 			"    float diff = dist - u_time; \n" +
+			"#ifndef SHOCKWAVE_NO_CLAMP\n" +
 			"    if ((diff <= u_thickness) && (diff >= -u_thickness)) \n" +
+			"#endif\n" +
 			"    {\n" +
 			"        float powDiff = 1.0 - pow(abs(diff * u_diffusion), u_diffusionp); \n" +
 			"        float diffTime = diff * powDiff;\n" +
 			"        vec2 diffUV = normalize(uv - u_center); \n" +
 			"        texCoord = uv + (diffUV * diffTime);\n" +
 			"    }\n" +
-			"    gl_FragColor = texture2D(u_texture0, texCoord);\n" +
+			"    gl_FragColor = texture2D(u_texture0, texCoord * u_uvScale);\n" +
 			"}";
 
+	// Farthest a pixel may be from the wave, in normalized coordinates
+	static final float MaxDistance = (float) Math.sqrt(2.0);
+
+	private final ShaderVariants variants;
+
 	private final FloatShaderParameter time;
 	private final Vector2ShaderParameter center;
 	private final FloatShaderParameter diffusionFactor;
@@ -88,13 +96,19 @@ public class Shockwave extends OwnedSinglePassShaderEffect implements TemporalEf
 	private float lastY;
 
 	public Shockwave(Camera camera, Vector2 center, float duration, boolean reverse) {
-		super(CommonShaders.Screenspace, Shockwave);
+		this(new ShaderVariants(CommonShaders.Screenspace, Shockwave), camera, center, duration, reverse);
+	}
+
+	private Shockwave(ShaderVariants variants, Camera camera, Vector2 center, float duration, boolean reverse) {
+		super(variants.get());
+		this.variants = variants;
 		this.camera = camera;
 		this.duration = duration;
 		this.reverse = reverse;
 
 		this.elapsed = 0f;
 
+		registerParameterBlock(Parameters);
 		this.time = registerParameter("u_time", 0f);
 		this.center = registerParameter("u_center", normalizeCenter(center.x, center.y));
 		this.diffusionFactor = registerParameter("u_diffusion", 10.0f);
@@ -120,6 +134,9 @@ public class Shockwave extends OwnedSinglePassShaderEffect implements TemporalEf
 
 	public void setThickness(float thickness) {
 		this.thickness.setValue(thickness);
+
+		// No need to test thickness for every pixel if it covers the whole screen
+		setProgram(thickness >= MaxDistance ? variants.get("SHOCKWAVE_NO_CLAMP") : variants.get());
 	}
 
 	public float getDiffusionFactor() {
@@ -138,6 +155,18 @@ public class Shockwave extends OwnedSinglePassShaderEffect implements TemporalEf
 		this.diffusionPower.setValue(diffusionPower);
 	}
 
+	@Override
+	public boolean isIdentity() {
+		// Finished, or no pixel within reach of the wave
+		return elapsed >= duration || thickness.getValue() == 0f;
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		variants.dispose();
+	}
+
 	@Override
 	public void reset() {
 		elapsed = 0f;